@@ -0,0 +1,25 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.model;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sources and javadoc jars of the external modules of some projects.
+ */
+public interface GradleClassifierArtifacts extends Serializable {
+  /**
+   * Returns the classifier artifacts keyed by {@link #getModuleKey}.
+   */
+  Map<String, List<Artifact>> getClassifierArtifacts();
+
+  /**
+   * Returns the key of a module in {@link #getClassifierArtifacts()}.
+   */
+  static String getModuleKey(String group, String module, String version) {
+    return group + ':' + module + ':' + version;
+  }
+}
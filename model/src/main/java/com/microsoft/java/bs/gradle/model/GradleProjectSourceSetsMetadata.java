@@ -0,0 +1,16 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.model;
+
+/**
+ * The {@link GradleSourceSetsMetadata} of a single Gradle project, used to
+ * re-fetch only the projects whose build scripts have changed.
+ *
+ * <p>
+ * Module dependencies on the outputs of other projects are not filtered out,
+ * as the outputs of other projects are unknown when building this model.
+ * </p>
+ */
+public interface GradleProjectSourceSetsMetadata extends GradleSourceSetsMetadata {
+}
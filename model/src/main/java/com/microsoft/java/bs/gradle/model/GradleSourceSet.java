@@ -90,6 +90,11 @@ public interface GradleSourceSet extends Serializable {
    */
   public File getResourceOutputDir();
 
+  /**
+   * The archives (e.g. jars) built from the output of this source set.
+   */
+  public Set<File> getArchiveOutputFiles();
+
   /**
    * The compile classpath for this source set.
    */
@@ -114,4 +119,9 @@ public interface GradleSourceSet extends Serializable {
    * Extensions of the source set.
    */
   public Map<String, LanguageExtension> getExtensions();
+
+  /**
+   * Content hashes of this source set, or {@code null} if they were not computed.
+   */
+  public GradleSourceSetFingerprint getFingerprint();
 }
@@ -0,0 +1,33 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.model;
+
+import java.io.Serializable;
+
+/**
+ * 128-bit content hashes of a {@link GradleSourceSet}, one per aspect, so that two
+ * source sets can be compared without walking their paths and dependencies.
+ */
+public interface GradleSourceSetFingerprint extends Serializable {
+
+  /**
+   * Hash of the names, directories, outputs and tasks of the source set.
+   */
+  public String getStructure();
+
+  /**
+   * Hash of the compile classpath, in order.
+   */
+  public String getClasspath();
+
+  /**
+   * Hash of the module and build target dependencies.
+   */
+  public String getDependencies();
+
+  /**
+   * Hash of the language extensions.
+   */
+  public String getExtensions();
+}
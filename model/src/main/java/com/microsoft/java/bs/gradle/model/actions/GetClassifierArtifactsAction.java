@@ -0,0 +1,64 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.model.actions;
+
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.GradleClassifierArtifacts;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleClassifierArtifacts;
+import org.gradle.tooling.BuildAction;
+import org.gradle.tooling.BuildController;
+import org.gradle.tooling.model.gradle.BasicGradleProject;
+import org.gradle.tooling.model.gradle.GradleBuild;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link BuildAction} that resolves the sources and javadoc jars of the external
+ * modules of the given projects, handling both normal and composite builds.
+ */
+public class GetClassifierArtifactsAction implements BuildAction<GradleClassifierArtifacts> {
+  /**
+   * The directories of the projects to resolve.
+   */
+  private final Set<File> projectDirs;
+
+  public GetClassifierArtifactsAction(Set<File> projectDirs) {
+    this.projectDirs = projectDirs;
+  }
+
+  @Override
+  public GradleClassifierArtifacts execute(BuildController buildController) {
+    Map<String, List<Artifact>> classifierArtifacts = new HashMap<>();
+    fetchModels(buildController, buildController.getBuildModel(), new HashSet<>(),
+        classifierArtifacts);
+    return new DefaultGradleClassifierArtifacts(classifierArtifacts);
+  }
+
+  private void fetchModels(BuildController buildController, GradleBuild build,
+      Set<String> traversedBuilds, Map<String, List<Artifact>> classifierArtifacts) {
+    if (!traversedBuilds.add(build.getRootProject().getName())) {
+      return;
+    }
+    for (BasicGradleProject project : build.getProjects()) {
+      if (projectDirs.contains(project.getProjectDirectory())) {
+        GradleClassifierArtifacts model = buildController.findModel(project,
+            GradleClassifierArtifacts.class);
+        if (model != null) {
+          // copy the artifacts, the model returned from the controller is a proxy.
+          classifierArtifacts.putAll(
+              new DefaultGradleClassifierArtifacts(model).getClassifierArtifacts());
+        }
+      }
+    }
+
+    for (GradleBuild includedBuild : build.getIncludedBuilds()) {
+      fetchModels(buildController, includedBuild, traversedBuilds, classifierArtifacts);
+    }
+  }
+}
@@ -3,19 +3,29 @@
 
 package com.microsoft.java.bs.gradle.model.actions;
 
+import com.microsoft.java.bs.gradle.model.Artifact;
 import com.microsoft.java.bs.gradle.model.BuildTargetDependency;
+import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
+import com.microsoft.java.bs.gradle.model.GradleProjectSourceSetsMetadata;
 import com.microsoft.java.bs.gradle.model.GradleSourceSet;
 import com.microsoft.java.bs.gradle.model.GradleSourceSets;
 import com.microsoft.java.bs.gradle.model.GradleSourceSetsMetadata;
 import com.microsoft.java.bs.gradle.model.impl.DefaultBuildTargetDependency;
 import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSet;
 import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSets;
+import com.microsoft.java.bs.gradle.model.impl.InternTable;
 import org.gradle.tooling.BuildAction;
 import org.gradle.tooling.BuildController;
+import org.gradle.tooling.UnsupportedVersionException;
+import org.gradle.tooling.model.Model;
+import org.gradle.tooling.model.UnsupportedMethodException;
+import org.gradle.tooling.model.gradle.BasicGradleProject;
 import org.gradle.tooling.model.gradle.GradleBuild;
 
 import java.io.File;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -29,6 +39,37 @@ import java.util.Map.Entry;
  * handling both normal and composite builds.
  */
 public class GetSourceSetsAction implements BuildAction<GradleSourceSets> {
+  /**
+   * The directories of the projects to fetch, or {@code null} to fetch all projects.
+   */
+  private final Set<File> projectDirs;
+
+  /**
+   * Whether the projects are isolated from each other, so that the model of each project
+   * has to be fetched separately.
+   */
+  private final boolean isolatedProjects;
+
+  public GetSourceSetsAction() {
+    this(null);
+  }
+
+  /**
+   * Only fetch the source sets of the projects in the given directories.
+   * When the set is {@code null}, the source sets of all projects are fetched.
+   */
+  public GetSourceSetsAction(Set<File> projectDirs) {
+    this(projectDirs, false);
+  }
+
+  /**
+   * Only fetch the source sets of the projects in the given directories. When the projects
+   * are isolated, the root project cannot collect the source sets of the whole build.
+   */
+  public GetSourceSetsAction(Set<File> projectDirs, boolean isolatedProjects) {
+    this.projectDirs = projectDirs;
+    this.isolatedProjects = isolatedProjects;
+  }
 
   /**
    * Executes the build action and retrieves source sets from the Gradle build.
@@ -37,20 +78,31 @@ public class GetSourceSetsAction implements BuildAction<GradleSourceSets> {
    */
   @Override
   public GradleSourceSets execute(BuildController buildController) {
-    Set<String> traversedProjects = new HashSet<>();
     Map<GradleSourceSet, List<File>> sourceSetToClasspath = new HashMap<>();
     Map<File, GradleSourceSet> outputsToSourceSet = new HashMap<>();
 
-    GradleBuild buildModel = buildController.getBuildModel();
-    String rootProjectName = buildModel.getRootProject().getName();
-    fetchModels(buildController,
-        buildModel,
-        traversedProjects,
-        sourceSetToClasspath,
-        outputsToSourceSet,
-        rootProjectName);
+    List<GradleBuild> builds = new ArrayList<>();
+    collectBuilds(buildController.getBuildModel(), new HashSet<>(), builds);
+    for (GradleSourceSetsMetadata sourceSets : fetchModels(buildController, builds)) {
+      sourceSetToClasspath.putAll(sourceSets.getGradleSourceSetsToClasspath());
+      outputsToSourceSet.putAll(sourceSets.getOutputsToSourceSet());
+    }
+
+    // the models of single projects only know about their own directories, so the module
+    // dependencies on the outputs of the other projects are removed here.
+    Set<File> exclusionFromDependencies = null;
+    if (projectDirs != null || isolatedProjects) {
+      exclusionFromDependencies = new HashSet<>(outputsToSourceSet.keySet());
+      for (GradleSourceSet sourceSet : sourceSetToClasspath.keySet()) {
+        addAll(exclusionFromDependencies, sourceSet.getSourceDirs());
+        addAll(exclusionFromDependencies, sourceSet.getGeneratedSourceDirs());
+        addAll(exclusionFromDependencies, sourceSet.getResourceDirs());
+      }
+    }
 
-    // Add dependencies
+    // Add dependencies, the source sets share the equal paths and module dependencies so
+    // that they are only serialized once.
+    InternTable internTable = new InternTable();
     List<GradleSourceSet> sourceSets = new ArrayList<>();
     for (Entry<GradleSourceSet, List<File>> entry : sourceSetToClasspath.entrySet()) {
       Set<BuildTargetDependency> dependencies = new HashSet<>();
@@ -61,55 +113,127 @@ public class GetSourceSetsAction implements BuildAction<GradleSourceSets> {
         }
       }
 
-      DefaultGradleSourceSet sourceSet = new DefaultGradleSourceSet(entry.getKey());
+      DefaultGradleSourceSet sourceSet = new DefaultGradleSourceSet(entry.getKey(), internTable);
       sourceSet.setBuildTargetDependencies(dependencies);
+      if (exclusionFromDependencies != null) {
+        Set<File> exclusions = exclusionFromDependencies;
+        sourceSet.getModuleDependencies().removeIf(dep -> isExcluded(dep, exclusions));
+      }
+      // hash the content once here, so the server can compare fingerprints on reload.
+      sourceSet.updateFingerprint();
       sourceSets.add(sourceSet);
-
     }
 
     return new DefaultGradleSourceSets(sourceSets);
   }
 
+  private static void addAll(Set<File> files, Collection<File> toAdd) {
+    if (toAdd != null) {
+      files.addAll(toAdd);
+    }
+  }
+
   /**
-   * Fetches source sets from the provided Gradle build model and
-   * stores them in a map categorized by project name.
+   * Module dependencies pointing to the directories or archives of other projects are
+   * project dependencies, which the build target dependencies already cover.
+   */
+  private static boolean isExcluded(GradleModuleDependency dependency, Set<File> exclusions) {
+    for (Artifact artifact : dependency.getArtifacts()) {
+      URI uri = artifact.getUri();
+      if (uri != null && "file".equals(uri.getScheme()) && exclusions.contains(new File(uri))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Collects the given build and all its included builds.
    *
-   * @param buildController      The Gradle build controller used to interact with the build.
-   * @param build                The Gradle build model representing the current build.
-   * @param traversedProjects    A set of traversed project names to avoid cyclic dependencies.
-   * @param sourceSetToClasspath A map that associates GradleSourceSet objects with their
-   *                             corresponding classpath files.
-   * @param outputsToSourceSet   A map that associates output files with the GradleSourceSet
-   *                             they belong to.
-   * @param buildName            The name of the root project in the build.
+   * @param build           The Gradle build model representing the current build.
+   * @param traversedBuilds A set of traversed build names to avoid cyclic dependencies.
+   * @param builds          The list the builds are added to.
    */
-  private void fetchModels(
-      BuildController buildController,
-      GradleBuild build,
-      Set<String> traversedProjects,
-      Map<GradleSourceSet, List<File>> sourceSetToClasspath,
-      Map<File, GradleSourceSet> outputsToSourceSet,
-      String buildName
-  ) {
-    if (traversedProjects.contains(buildName)) {
+  private void collectBuilds(GradleBuild build, Set<String> traversedBuilds,
+      List<GradleBuild> builds) {
+    if (!traversedBuilds.add(build.getRootProject().getName())) {
       return;
     }
-    GradleSourceSetsMetadata sourceSets = buildController
-        .findModel(build.getRootProject(), GradleSourceSetsMetadata.class);
+    builds.add(build);
+    for (GradleBuild includedBuild : build.getIncludedBuilds()) {
+      collectBuilds(includedBuild, traversedBuilds, builds);
+    }
+  }
 
-    traversedProjects.add(buildName);
-    sourceSetToClasspath.putAll(sourceSets.getGradleSourceSetsToClasspath());
-    outputsToSourceSet.putAll(sourceSets.getOutputsToSourceSet());
+  /**
+   * Fetches the source sets of the given builds, either as a whole or only those of the
+   * requested projects. The models are queried in parallel when the build allows it,
+   * otherwise one after another.
+   */
+  private List<GradleSourceSetsMetadata> fetchModels(BuildController buildController,
+      List<GradleBuild> builds) {
+    List<FindModelAction> actions = new ArrayList<>();
+    for (GradleBuild build : builds) {
+      if (projectDirs == null && !isolatedProjects) {
+        actions.add(new FindModelAction(build.getRootProject(), GradleSourceSetsMetadata.class));
+        continue;
+      }
+      for (BasicGradleProject project : build.getProjects()) {
+        if (projectDirs == null || projectDirs.contains(project.getProjectDirectory())) {
+          actions.add(new FindModelAction(project, GradleProjectSourceSetsMetadata.class));
+        }
+      }
+    }
 
-    for (GradleBuild includedBuild : build.getIncludedBuilds()) {
-      String includedBuildName = includedBuild.getRootProject().getName();
-      fetchModels(buildController,
-          includedBuild,
-          traversedProjects,
-          sourceSetToClasspath,
-          outputsToSourceSet,
-          includedBuildName);
+    List<GradleSourceSetsMetadata> results = null;
+    if (actions.size() > 1 && canQueryInParallel(buildController)) {
+      try {
+        results = buildController.run(actions);
+      } catch (UnsupportedVersionException e) {
+        // nested actions need Gradle 6.8+, fall back to query the models one by one.
+      }
+    }
+    if (results == null) {
+      results = new ArrayList<>();
+      for (FindModelAction action : actions) {
+        results.add(action.execute(buildController));
+      }
     }
+
+    List<GradleSourceSetsMetadata> models = new ArrayList<>();
+    for (GradleSourceSetsMetadata model : results) {
+      if (model != null) {
+        models.add(model);
+      }
+    }
+    return models;
   }
 
+  private boolean canQueryInParallel(BuildController buildController) {
+    try {
+      return buildController.getCanQueryProjectModelInParallel(GradleSourceSetsMetadata.class);
+    } catch (UnsupportedVersionException | UnsupportedMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Nested {@link BuildAction} which queries the source sets model of one project.
+   * It is only ever executed inside the same build, so the target is not serialized.
+   */
+  private static class FindModelAction implements BuildAction<GradleSourceSetsMetadata> {
+    private final transient Model target;
+
+    private final Class<? extends GradleSourceSetsMetadata> modelType;
+
+    FindModelAction(Model target, Class<? extends GradleSourceSetsMetadata> modelType) {
+      this.target = target;
+      this.modelType = modelType;
+    }
+
+    @Override
+    public GradleSourceSetsMetadata execute(BuildController controller) {
+      return controller.findModel(target, modelType);
+    }
+  }
 }
@@ -0,0 +1,66 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.model.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.GradleClassifierArtifacts;
+
+/**
+ * Default implementation of {@link GradleClassifierArtifacts}.
+ */
+public class DefaultGradleClassifierArtifacts implements GradleClassifierArtifacts {
+  private static final long serialVersionUID = 1L;
+
+  private Map<String, List<Artifact>> classifierArtifacts;
+
+  public DefaultGradleClassifierArtifacts(Map<String, List<Artifact>> classifierArtifacts) {
+    this.classifierArtifacts = classifierArtifacts;
+  }
+
+  /**
+   * Copy constructor.
+   */
+  public DefaultGradleClassifierArtifacts(GradleClassifierArtifacts classifierArtifacts) {
+    this.classifierArtifacts = new HashMap<>();
+    classifierArtifacts.getClassifierArtifacts().forEach((key, artifacts) ->
+        this.classifierArtifacts.put(key, artifacts.stream()
+            .map(DefaultArtifact::new)
+            .collect(Collectors.toList())));
+  }
+
+  @Override
+  public Map<String, List<Artifact>> getClassifierArtifacts() {
+    return classifierArtifacts;
+  }
+
+  public void setClassifierArtifacts(Map<String, List<Artifact>> classifierArtifacts) {
+    this.classifierArtifacts = classifierArtifacts;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(classifierArtifacts);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    DefaultGradleClassifierArtifacts other = (DefaultGradleClassifierArtifacts) obj;
+    return Objects.equals(classifierArtifacts, other.classifierArtifacts);
+  }
+}
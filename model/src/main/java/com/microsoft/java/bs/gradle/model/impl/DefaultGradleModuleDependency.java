@@ -44,10 +44,19 @@ public class DefaultGradleModuleDependency implements GradleModuleDependency {
    * Copy constructor.
    */
   public DefaultGradleModuleDependency(GradleModuleDependency moduleDependency) {
+    this(moduleDependency, new InternTable());
+  }
+
+  /**
+   * Copy constructor, sharing the artifacts through the given table.
+   */
+  public DefaultGradleModuleDependency(GradleModuleDependency moduleDependency,
+      InternTable internTable) {
     this.group = moduleDependency.getGroup();
     this.module = moduleDependency.getModule();
     this.version = moduleDependency.getVersion();
-    this.artifacts = moduleDependency.getArtifacts().stream().map(DefaultArtifact::new)
+    this.artifacts = moduleDependency.getArtifacts().stream()
+        .map(artifact -> internTable.intern(new DefaultArtifact(artifact)))
         .collect(Collectors.toList());
   }
 
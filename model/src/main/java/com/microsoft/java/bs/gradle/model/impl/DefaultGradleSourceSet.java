@@ -13,6 +13,7 @@ import java.util.stream.Collectors;
 import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
 import com.microsoft.java.bs.gradle.model.BuildTargetDependency;
 import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+import com.microsoft.java.bs.gradle.model.GradleSourceSetFingerprint;
 import com.microsoft.java.bs.gradle.model.LanguageExtension;
 
 /**
@@ -51,6 +52,8 @@ public class DefaultGradleSourceSet implements GradleSourceSet {
 
   private File resourceOutputDir;
 
+  private Set<File> archiveOutputFiles;
+
   private List<File> compileClasspath;
 
   private Set<GradleModuleDependency> moduleDependencies;
@@ -61,6 +64,8 @@ public class DefaultGradleSourceSet implements GradleSourceSet {
 
   private Map<String, LanguageExtension> extensions;
 
+  private GradleSourceSetFingerprint fingerprint;
+
   public DefaultGradleSourceSet() {}
 
   /**
@@ -69,39 +74,56 @@ public class DefaultGradleSourceSet implements GradleSourceSet {
    * @param gradleSourceSet the source set to copy from.
    */
   public DefaultGradleSourceSet(GradleSourceSet gradleSourceSet) {
+    this(gradleSourceSet, new InternTable());
+  }
+
+  /**
+   * Copy constructor, sharing the paths and dependencies with the other source sets
+   * copied through the same table.
+   *
+   * @param gradleSourceSet the source set to copy from.
+   * @param internTable the table of the shared values.
+   */
+  public DefaultGradleSourceSet(GradleSourceSet gradleSourceSet, InternTable internTable) {
     this.gradleVersion = gradleSourceSet.getGradleVersion();
     this.displayName = gradleSourceSet.getDisplayName();
     this.projectName = gradleSourceSet.getProjectName();
     this.projectPath = gradleSourceSet.getProjectPath();
-    this.projectDir = gradleSourceSet.getProjectDir();
-    this.rootDir = gradleSourceSet.getRootDir();
+    this.projectDir = internTable.intern(gradleSourceSet.getProjectDir());
+    this.rootDir = internTable.intern(gradleSourceSet.getRootDir());
     this.sourceSetName = gradleSourceSet.getSourceSetName();
     this.classesTaskName = gradleSourceSet.getClassesTaskName();
     this.cleanTaskName = gradleSourceSet.getCleanTaskName();
     this.taskNames = gradleSourceSet.getTaskNames();
-    this.sourceDirs = gradleSourceSet.getSourceDirs();
-    this.generatedSourceDirs = gradleSourceSet.getGeneratedSourceDirs();
-    this.sourceOutputDir = gradleSourceSet.getSourceOutputDir();
-    this.resourceDirs = gradleSourceSet.getResourceDirs();
-    this.resourceOutputDir = gradleSourceSet.getResourceOutputDir();
-    this.compileClasspath = gradleSourceSet.getCompileClasspath();
+    this.sourceDirs = internTable.internFiles(gradleSourceSet.getSourceDirs());
+    this.generatedSourceDirs = internTable.internFiles(gradleSourceSet.getGeneratedSourceDirs());
+    this.sourceOutputDir = internTable.intern(gradleSourceSet.getSourceOutputDir());
+    this.resourceDirs = internTable.internFiles(gradleSourceSet.getResourceDirs());
+    this.resourceOutputDir = internTable.intern(gradleSourceSet.getResourceOutputDir());
+    this.archiveOutputFiles = internTable.internFiles(gradleSourceSet.getArchiveOutputFiles());
+    this.compileClasspath = internTable.internFiles(gradleSourceSet.getCompileClasspath());
     this.moduleDependencies = gradleSourceSet.getModuleDependencies().stream()
-        .map(DefaultGradleModuleDependency::new).collect(Collectors.toSet());
+        .map(dependency -> internTable.intern(
+            new DefaultGradleModuleDependency(dependency, internTable)))
+        .collect(Collectors.toSet());
     this.buildTargetDependencies = gradleSourceSet.getBuildTargetDependencies().stream()
         .map(DefaultBuildTargetDependency::new).collect(Collectors.toSet());
     this.hasTests = gradleSourceSet.hasTests();
     this.extensions = gradleSourceSet.getExtensions().entrySet().stream()
       .collect(Collectors.toMap(Map.Entry::getKey,
         e -> convertLanguageExtension(e.getValue())));
+    if (gradleSourceSet.getFingerprint() != null) {
+      this.fingerprint = new DefaultGradleSourceSetFingerprint(gradleSourceSet.getFingerprint());
+    }
   }
 
   private LanguageExtension convertLanguageExtension(LanguageExtension object) {
     if (object.isJavaExtension()) {
-      return object.getAsJavaExtension();
+      return new DefaultJavaExtension(object.getAsJavaExtension());
     }
 
     if (object.isScalaExtension()) {
-      return object.getAsScalaExtension();
+      return new DefaultScalaExtension(object.getAsScalaExtension());
     }
 
     throw new IllegalArgumentException("No conversion methods defined for object: " + object);
@@ -239,6 +261,15 @@ public class DefaultGradleSourceSet implements GradleSourceSet {
     this.resourceOutputDir = resourceOutputDir;
   }
 
+  @Override
+  public Set<File> getArchiveOutputFiles() {
+    return archiveOutputFiles;
+  }
+
+  public void setArchiveOutputFiles(Set<File> archiveOutputFiles) {
+    this.archiveOutputFiles = archiveOutputFiles;
+  }
+
   @Override
   public List<File> getCompileClasspath() {
     return compileClasspath;
@@ -284,12 +315,29 @@ public class DefaultGradleSourceSet implements GradleSourceSet {
     this.extensions = extensions;
   }
 
+  @Override
+  public GradleSourceSetFingerprint getFingerprint() {
+    return fingerprint;
+  }
+
+  public void setFingerprint(GradleSourceSetFingerprint fingerprint) {
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * Recompute the fingerprint from the current content of this source set.
+   */
+  public void updateFingerprint() {
+    this.fingerprint = DefaultGradleSourceSetFingerprint.of(this);
+  }
+
+  // the fingerprint is derived from the other fields, so it is not compared.
   @Override
   public int hashCode() {
     return Objects.hash(gradleVersion, displayName, projectName, projectPath,
         projectDir, rootDir, sourceSetName, classesTaskName, cleanTaskName, taskNames, sourceDirs,
         generatedSourceDirs, sourceOutputDir, resourceDirs, resourceOutputDir,
-        compileClasspath, moduleDependencies, buildTargetDependencies,
+        archiveOutputFiles, compileClasspath, moduleDependencies, buildTargetDependencies,
         hasTests, extensions);
   }
 
@@ -320,6 +368,7 @@ public class DefaultGradleSourceSet implements GradleSourceSet {
         && Objects.equals(sourceOutputDir, other.sourceOutputDir)
         && Objects.equals(resourceDirs, other.resourceDirs)
         && Objects.equals(resourceOutputDir, other.resourceOutputDir)
+        && Objects.equals(archiveOutputFiles, other.archiveOutputFiles)
         && Objects.equals(compileClasspath, other.compileClasspath)
         && Objects.equals(moduleDependencies, other.moduleDependencies)
         && Objects.equals(buildTargetDependencies, other.buildTargetDependencies)
@@ -0,0 +1,265 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.model.impl;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.BuildTargetDependency;
+import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
+import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+import com.microsoft.java.bs.gradle.model.GradleSourceSetFingerprint;
+import com.microsoft.java.bs.gradle.model.JavaExtension;
+import com.microsoft.java.bs.gradle.model.LanguageExtension;
+import com.microsoft.java.bs.gradle.model.ScalaExtension;
+
+/**
+ * Default implementation of {@link GradleSourceSetFingerprint}.
+ */
+public class DefaultGradleSourceSetFingerprint implements GradleSourceSetFingerprint {
+  private static final long serialVersionUID = 1L;
+
+  private String structure;
+
+  private String classpath;
+
+  private String dependencies;
+
+  private String extensions;
+
+  public DefaultGradleSourceSetFingerprint() {}
+
+  /**
+   * Copy constructor.
+   *
+   * @param fingerprint the fingerprint to copy from.
+   */
+  public DefaultGradleSourceSetFingerprint(GradleSourceSetFingerprint fingerprint) {
+    this.structure = fingerprint.getStructure();
+    this.classpath = fingerprint.getClasspath();
+    this.dependencies = fingerprint.getDependencies();
+    this.extensions = fingerprint.getExtensions();
+  }
+
+  /**
+   * Compute the fingerprint of the given source set. The unordered collections are
+   * sorted first, so the result does not depend on their iteration order.
+   */
+  public static DefaultGradleSourceSetFingerprint of(GradleSourceSet sourceSet) {
+    DefaultGradleSourceSetFingerprint fingerprint = new DefaultGradleSourceSetFingerprint();
+
+    Digest digest = new Digest();
+    digest.put(sourceSet.getGradleVersion());
+    digest.put(sourceSet.getDisplayName());
+    digest.put(sourceSet.getProjectName());
+    digest.put(sourceSet.getProjectPath());
+    digest.put(sourceSet.getProjectDir());
+    digest.put(sourceSet.getRootDir());
+    digest.put(sourceSet.getSourceSetName());
+    digest.put(sourceSet.getClassesTaskName());
+    digest.put(sourceSet.getCleanTaskName());
+    digest.putSorted(sourceSet.getTaskNames());
+    digest.putSorted(sourceSet.getSourceDirs());
+    digest.putSorted(sourceSet.getGeneratedSourceDirs());
+    digest.put(sourceSet.getSourceOutputDir());
+    digest.putSorted(sourceSet.getResourceDirs());
+    digest.put(sourceSet.getResourceOutputDir());
+    digest.putSorted(sourceSet.getArchiveOutputFiles());
+    digest.put(String.valueOf(sourceSet.hasTests()));
+    fingerprint.structure = digest.finish();
+
+    digest = new Digest();
+    digest.putOrdered(sourceSet.getCompileClasspath());
+    fingerprint.classpath = digest.finish();
+
+    digest = new Digest();
+    List<String> moduleDependencies = new ArrayList<>();
+    if (sourceSet.getModuleDependencies() != null) {
+      for (GradleModuleDependency dependency : sourceSet.getModuleDependencies()) {
+        moduleDependencies.add(toString(dependency));
+      }
+    }
+    digest.putSorted(moduleDependencies);
+    List<String> buildTargetDependencies = new ArrayList<>();
+    if (sourceSet.getBuildTargetDependencies() != null) {
+      for (BuildTargetDependency dependency : sourceSet.getBuildTargetDependencies()) {
+        buildTargetDependencies.add(dependency.getProjectDir() + "?sourceset="
+            + dependency.getSourceSetName());
+      }
+    }
+    digest.putSorted(buildTargetDependencies);
+    fingerprint.dependencies = digest.finish();
+
+    digest = new Digest();
+    if (sourceSet.getExtensions() != null) {
+      for (Map.Entry<String, LanguageExtension> entry
+          : new TreeMap<>(sourceSet.getExtensions()).entrySet()) {
+        digest.put(entry.getKey());
+        putExtension(digest, entry.getValue());
+      }
+    }
+    fingerprint.extensions = digest.finish();
+    return fingerprint;
+  }
+
+  private static String toString(GradleModuleDependency dependency) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(dependency.getGroup()).append(':').append(dependency.getModule())
+        .append(':').append(dependency.getVersion());
+    if (dependency.getArtifacts() != null) {
+      for (Artifact artifact : dependency.getArtifacts()) {
+        sb.append('\n').append(artifact.getUri()).append('|').append(artifact.getClassifier());
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void putExtension(Digest digest, LanguageExtension extension) {
+    if (extension.isJavaExtension()) {
+      JavaExtension javaExtension = extension.getAsJavaExtension();
+      digest.put("java");
+      digest.put(javaExtension.getJavaHome());
+      digest.put(javaExtension.getJavaVersion());
+      digest.put(javaExtension.getSourceCompatibility());
+      digest.put(javaExtension.getTargetCompatibility());
+      digest.putOrdered(javaExtension.getCompilerArgs());
+    }
+    if (extension.isScalaExtension()) {
+      ScalaExtension scalaExtension = extension.getAsScalaExtension();
+      digest.put("scala");
+      digest.putOrdered(scalaExtension.getScalaCompilerArgs());
+      digest.put(scalaExtension.getScalaOrganization());
+      digest.put(scalaExtension.getScalaVersion());
+      digest.put(scalaExtension.getScalaBinaryVersion());
+      digest.putOrdered(scalaExtension.getScalaJars());
+    }
+  }
+
+  @Override
+  public String getStructure() {
+    return structure;
+  }
+
+  public void setStructure(String structure) {
+    this.structure = structure;
+  }
+
+  @Override
+  public String getClasspath() {
+    return classpath;
+  }
+
+  public void setClasspath(String classpath) {
+    this.classpath = classpath;
+  }
+
+  @Override
+  public String getDependencies() {
+    return dependencies;
+  }
+
+  public void setDependencies(String dependencies) {
+    this.dependencies = dependencies;
+  }
+
+  @Override
+  public String getExtensions() {
+    return extensions;
+  }
+
+  public void setExtensions(String extensions) {
+    this.extensions = extensions;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(structure, classpath, dependencies, extensions);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    DefaultGradleSourceSetFingerprint other = (DefaultGradleSourceSetFingerprint) obj;
+    return Objects.equals(structure, other.structure)
+        && Objects.equals(classpath, other.classpath)
+        && Objects.equals(dependencies, other.dependencies)
+        && Objects.equals(extensions, other.extensions);
+  }
+
+  /**
+   * MD5 over the values, each one terminated so that adjacent values cannot run together.
+   * The hash is not used for anything security related.
+   */
+  private static class Digest {
+    private final MessageDigest md;
+
+    Digest() {
+      try {
+        md = MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("MD5 is not available.", e);
+      }
+    }
+
+    void put(Object value) {
+      if (value == null) {
+        md.update((byte) 1);
+      } else {
+        String str = value instanceof File ? ((File) value).getPath() : value.toString();
+        md.update(str.getBytes(StandardCharsets.UTF_8));
+      }
+      md.update((byte) 0);
+    }
+
+    void putOrdered(Collection<?> values) {
+      if (values == null) {
+        put(null);
+        return;
+      }
+      put(values.size());
+      for (Object value : values) {
+        put(value);
+      }
+    }
+
+    void putSorted(Collection<?> values) {
+      if (values == null) {
+        put(null);
+        return;
+      }
+      List<String> sorted = new ArrayList<>(values.size());
+      for (Object value : values) {
+        sorted.add(value instanceof File ? ((File) value).getPath() : String.valueOf(value));
+      }
+      Collections.sort(sorted);
+      putOrdered(sorted);
+    }
+
+    String finish() {
+      StringBuilder sb = new StringBuilder(32);
+      for (byte b : md.digest()) {
+        sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+    }
+  }
+}
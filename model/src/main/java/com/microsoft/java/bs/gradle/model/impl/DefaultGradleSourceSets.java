@@ -26,9 +26,11 @@ public class DefaultGradleSourceSets implements GradleSourceSets {
    * Copy constructor.
    */
   public DefaultGradleSourceSets(GradleSourceSets sourceSets) {
-    this(sourceSets.getGradleSourceSets().stream()
-        .map(DefaultGradleSourceSet::new)
-        .collect(Collectors.toList()));
+    // the source sets share the equal paths and dependencies.
+    InternTable internTable = new InternTable();
+    this.gradleSourceSets = sourceSets.getGradleSourceSets().stream()
+        .map(sourceSet -> new DefaultGradleSourceSet(sourceSet, internTable))
+        .collect(Collectors.toList());
   }
 
   @Override
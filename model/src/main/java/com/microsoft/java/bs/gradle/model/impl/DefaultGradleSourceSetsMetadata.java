@@ -1,7 +1,7 @@
 package com.microsoft.java.bs.gradle.model.impl;
 
 import com.microsoft.java.bs.gradle.model.GradleSourceSet;
-import com.microsoft.java.bs.gradle.model.GradleSourceSetsMetadata;
+import com.microsoft.java.bs.gradle.model.GradleProjectSourceSetsMetadata;
 
 import java.io.File;
 import java.util.List;
@@ -11,7 +11,7 @@ import java.util.Objects;
 /**
  * Default implementation of {@link DefaultGradleSourceSetsMetadata}.
  */
-public class DefaultGradleSourceSetsMetadata implements GradleSourceSetsMetadata {
+public class DefaultGradleSourceSetsMetadata implements GradleProjectSourceSetsMetadata {
 
   private Map<GradleSourceSet, List<File>> sourceSetsToClasspath;
   private Map<File, GradleSourceSet> outputsToSourceSet;
@@ -26,6 +26,21 @@ public class DefaultJavaExtension implements JavaExtension {
 
   private List<String> compilerArgs;
 
+  public DefaultJavaExtension() {}
+
+  /**
+   * Copy constructor.
+   *
+   * @param javaExtension the java extension to copy from.
+   */
+  public DefaultJavaExtension(JavaExtension javaExtension) {
+    this.javaHome = javaExtension.getJavaHome();
+    this.javaVersion = javaExtension.getJavaVersion();
+    this.sourceCompatibility = javaExtension.getSourceCompatibility();
+    this.targetCompatibility = javaExtension.getTargetCompatibility();
+    this.compilerArgs = javaExtension.getCompilerArgs();
+  }
+
   @Override
   public File getJavaHome() {
     return javaHome;
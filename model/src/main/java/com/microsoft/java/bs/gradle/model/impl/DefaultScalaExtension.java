@@ -26,6 +26,21 @@ public class DefaultScalaExtension implements ScalaExtension {
 
   private List<File> scalaJars;
 
+  public DefaultScalaExtension() {}
+
+  /**
+   * Copy constructor.
+   *
+   * @param scalaExtension the scala extension to copy from.
+   */
+  public DefaultScalaExtension(ScalaExtension scalaExtension) {
+    this.scalaCompilerArgs = scalaExtension.getScalaCompilerArgs();
+    this.scalaOrganization = scalaExtension.getScalaOrganization();
+    this.scalaVersion = scalaExtension.getScalaVersion();
+    this.scalaBinaryVersion = scalaExtension.getScalaBinaryVersion();
+    this.scalaJars = scalaExtension.getScalaJars();
+  }
+
   @Override
   public List<String> getScalaCompilerArgs() {
     return scalaCompilerArgs;
@@ -0,0 +1,62 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.model.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shares the equal paths, artifacts and module dependencies of the source sets in a build.
+ * Java serialization writes a shared instance once and refers to it afterwards, so each
+ * value is only sent once across the Tooling API, no matter how many source sets use it.
+ */
+public class InternTable {
+
+  private final Map<Object, Object> values = new HashMap<>();
+
+  /**
+   * Return the instance equal to the given value which was interned first.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T intern(T value) {
+    if (value == null) {
+      return null;
+    }
+    Object existing = values.putIfAbsent(value, value);
+    return existing == null ? value : (T) existing;
+  }
+
+  /**
+   * Return a copy of the set with the files interned.
+   */
+  public Set<File> internFiles(Set<File> files) {
+    if (files == null) {
+      return null;
+    }
+    Set<File> interned = new LinkedHashSet<>();
+    for (File file : files) {
+      interned.add(intern(file));
+    }
+    return interned;
+  }
+
+  /**
+   * Return a copy of the list with the files interned.
+   */
+  public List<File> internFiles(List<File> files) {
+    if (files == null) {
+      return null;
+    }
+    List<File> interned = new ArrayList<>(files.size());
+    for (File file : files) {
+      interned.add(intern(file));
+    }
+    return interned;
+  }
+}
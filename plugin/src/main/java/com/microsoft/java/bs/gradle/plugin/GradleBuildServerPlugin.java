@@ -3,8 +3,13 @@
 
 package com.microsoft.java.bs.gradle.plugin;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -19,7 +24,12 @@ import com.microsoft.java.bs.gradle.model.SupportedLanguages;
  */
 public class GradleBuildServerPlugin implements Plugin<Project> {
 
-  public static final List<LanguageModelBuilder> SUPPORTED_LANGUAGE_BUILDERS = new LinkedList<>();
+  /**
+   * The language builders of the languages requested by the build server. The list is
+   * shared by all the projects and only rebuilt when the requested languages change,
+   * e.g. when the daemon which loaded this class runs a build for another client.
+   */
+  private static volatile LanguageBuilders languageBuilders;
 
   private final ToolingModelBuilderRegistry registry;
 
@@ -28,26 +38,50 @@ public class GradleBuildServerPlugin implements Plugin<Project> {
    */
   @Inject
   public GradleBuildServerPlugin(ToolingModelBuilderRegistry registry) {
-    registerSupportedLanguages();
     this.registry = registry;
   }
 
   @Override
   public void apply(Project project) {
+    // the registry is scoped to the project, so every project needs its own builder.
     registry.register(new SourceSetsModelBuilder());
   }
 
-  private void registerSupportedLanguages() {
-    String supportedLanguagesProps = System.getProperty("bsp.gradle.supportedLanguages");
-    if (supportedLanguagesProps != null) {
-      String[] supportedLanguages = supportedLanguagesProps.split(",");
-      for (String language : supportedLanguages) {
-        if (language.equalsIgnoreCase(SupportedLanguages.JAVA.getBspName())) {
-          SUPPORTED_LANGUAGE_BUILDERS.add(new JavaLanguageModelBuilder());
-        } else if (language.equalsIgnoreCase(SupportedLanguages.SCALA.getBspName())) {
-          SUPPORTED_LANGUAGE_BUILDERS.add(new ScalaLanguageModelBuilder());
+  /**
+   * Return the immutable list of the supported language builders.
+   */
+  public static List<LanguageModelBuilder> getSupportedLanguageBuilders() {
+    String supportedLanguages = System.getProperty("bsp.gradle.supportedLanguages");
+    LanguageBuilders builders = languageBuilders;
+    if (builders == null || !Objects.equals(builders.supportedLanguages, supportedLanguages)) {
+      builders = new LanguageBuilders(supportedLanguages);
+      languageBuilders = builders;
+    }
+    return builders.builders;
+  }
+
+  private static class LanguageBuilders {
+    private final String supportedLanguages;
+
+    private final List<LanguageModelBuilder> builders;
+
+    LanguageBuilders(String supportedLanguages) {
+      this.supportedLanguages = supportedLanguages;
+      List<LanguageModelBuilder> list = new ArrayList<>();
+      if (supportedLanguages != null) {
+        Set<String> languages = new LinkedHashSet<>();
+        for (String language : supportedLanguages.split(",")) {
+          languages.add(language.trim().toLowerCase(Locale.ROOT));
+        }
+        for (String language : languages) {
+          if (language.equalsIgnoreCase(SupportedLanguages.JAVA.getBspName())) {
+            list.add(new JavaLanguageModelBuilder());
+          } else if (language.equalsIgnoreCase(SupportedLanguages.SCALA.getBspName())) {
+            list.add(new ScalaLanguageModelBuilder());
+          }
         }
       }
+      this.builders = Collections.unmodifiableList(list);
     }
   }
 }
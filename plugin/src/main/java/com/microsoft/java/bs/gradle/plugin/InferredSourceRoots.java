@@ -0,0 +1,141 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The source directories inferred from the package declarations of generated files, kept
+ * across the syncs served by the same daemon. The roots are stored per compile task and
+ * only for the directories seen in the last scan of the task. The least recently scanned
+ * tasks are dropped once more than {@code maxTasks} are stored.
+ */
+class InferredSourceRoots {
+
+  private static final Pattern PACKAGE_PATTERN =
+      Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;\\s*$");
+
+  private final Map<String, Map<String, InferredSourceRoot>> rootsByTask;
+
+  InferredSourceRoots(int maxTasks) {
+    this.rootsByTask = Collections.synchronizedMap(
+        new LinkedHashMap<String, Map<String, InferredSourceRoot>>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(
+              Map.Entry<String, Map<String, InferredSourceRoot>> eldest) {
+            return size() > maxTasks;
+          }
+        });
+  }
+
+  /**
+   * Start scanning the sources of a compile task. The roots of the directories which are
+   * not looked up during the scan are dropped when it finishes.
+   */
+  Scan scan(String taskKey) {
+    Map<String, InferredSourceRoot> previous = rootsByTask.get(taskKey);
+    return new Scan(taskKey, previous == null ? Collections.emptyMap() : previous);
+  }
+
+  int size() {
+    return rootsByTask.size();
+  }
+
+  /**
+   * The source root lookups of a single compile task.
+   */
+  class Scan {
+    private final String taskKey;
+    private final Map<String, InferredSourceRoot> previous;
+    private final Map<String, InferredSourceRoot> seen = new HashMap<>();
+
+    private Scan(String taskKey, Map<String, InferredSourceRoot> previous) {
+      this.taskKey = taskKey;
+      this.previous = previous;
+    }
+
+    /**
+     * Return the source directory of the generated files in the directory, trying the
+     * files in order until one has a package declaration matching its path. The files are
+     * only parsed if the directory was modified since the last scan. A directory without
+     * any matching file is not cached, since editing a file does not modify it.
+     */
+    File getSourceDir(File dir, List<File> files) {
+      String key = dir.getAbsolutePath();
+      long lastModified = dir.lastModified();
+      InferredSourceRoot inferred = previous.get(key);
+      if (inferred == null || inferred.lastModified != lastModified) {
+        inferred = null;
+        for (File file : files) {
+          File sourceDir = file.isFile() ? findSourceDirForGeneratedFile(file) : null;
+          if (sourceDir != null) {
+            inferred = new InferredSourceRoot(lastModified, sourceDir);
+            break;
+          }
+        }
+        if (inferred == null) {
+          return null;
+        }
+      }
+      seen.put(key, inferred);
+      return inferred.sourceDir;
+    }
+
+    void finish() {
+      rootsByTask.put(taskKey, seen);
+    }
+  }
+
+  /**
+   * read the file content and find the package declaration.
+   * Then find the source directory that contains the package declaration.
+   * If the package declaration is not found, then return <code>null</code>.
+   */
+  private static File findSourceDirForGeneratedFile(File file) {
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        Matcher matcher = PACKAGE_PATTERN.matcher(line);
+        if (matcher.matches()) {
+          String packageName = matcher.group(1);
+          String relativeToRoot = packageName.replace(".", File.separator)
+              .concat(File.separator).concat(file.getName());
+          String absolutePath = file.getAbsolutePath();
+          if (!absolutePath.endsWith(relativeToRoot)) {
+            return null;
+          }
+          return new File(absolutePath.substring(
+                0, absolutePath.length() - relativeToRoot.length()));
+        }
+      }
+    } catch (IOException e) {
+      return null;
+    }
+
+    return null;
+  }
+
+  /**
+   * The source directory inferred for a directory of generated files.
+   */
+  private static class InferredSourceRoot {
+    private final long lastModified;
+    private final File sourceDir;
+
+    InferredSourceRoot(long lastModified, File sourceDir) {
+      this.lastModified = lastModified;
+      this.sourceDir = sourceDir;
+    }
+  }
+}
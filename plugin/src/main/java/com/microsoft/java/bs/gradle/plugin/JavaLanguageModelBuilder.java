@@ -3,19 +3,17 @@
 
 package com.microsoft.java.bs.gradle.plugin;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -41,10 +39,12 @@ import com.microsoft.java.bs.gradle.model.impl.DefaultJavaExtension;
  */
 public class JavaLanguageModelBuilder extends LanguageModelBuilder {
 
-  @Override
-  public boolean appliesFor(Project project, SourceSet sourceSet) {
-    return getJavaCompileTask(project, sourceSet) != null;
-  }
+  /**
+   * The source directories inferred from the package declarations, kept across the syncs
+   * served by the same daemon for a bounded number of compile tasks.
+   */
+  private static final InferredSourceRoots INFERRED_SOURCE_ROOTS =
+      new InferredSourceRoots(1000);
 
   @Override
   public SupportedLanguage<JavaExtension> getLanguage() {
@@ -59,8 +59,13 @@ public class JavaLanguageModelBuilder extends LanguageModelBuilder {
   @Override
   public Collection<File> getGeneratedSourceFoldersFor(Project project, SourceSet sourceSet) {
     Set<File> generatedSrcDirs = new HashSet<>();
-    addAnnotationProcessingDir(project, sourceSet, generatedSrcDirs);
-    addGeneratedSourceDirs(project, sourceSet, sourceSet.getJava().getSrcDirs(), generatedSrcDirs);
+    JavaCompile javaCompile = getJavaCompileTask(project, sourceSet);
+    if (javaCompile != null) {
+      addAnnotationProcessingDir(javaCompile, generatedSrcDirs);
+      String taskKey = project.getRootDir().getAbsolutePath() + javaCompile.getPath();
+      addGeneratedSourceDirs(taskKey, javaCompile, sourceSet.getJava().getSrcDirs(),
+          generatedSrcDirs);
+    }
     return generatedSrcDirs;
   }
 
@@ -85,97 +90,51 @@ public class JavaLanguageModelBuilder extends LanguageModelBuilder {
     return (JavaCompile) getLanguageCompileTask(project, sourceSet);
   }
 
-  private void addAnnotationProcessingDir(Project project, SourceSet sourceSet,
-      Set<File> generatedSrcDirs) {
-    JavaCompile javaCompile = getJavaCompileTask(project, sourceSet);
-    if (javaCompile != null) {
-      CompileOptions options = javaCompile.getOptions();
-      if (GradleVersion.current().compareTo(GradleVersion.version("6.3")) >= 0) {
-        Directory generatedDir = options.getGeneratedSourceOutputDirectory().getOrNull();
-        if (generatedDir != null) {
-          generatedSrcDirs.add(generatedDir.getAsFile());
-        }
-      } else if (GradleVersion.current().compareTo(GradleVersion.version("4.3")) >= 0) {
-        File generatedDir = options.getAnnotationProcessorGeneratedSourcesDirectory();
-        if (generatedDir != null) {
-          generatedSrcDirs.add(generatedDir);
-        }
+  private void addAnnotationProcessingDir(JavaCompile javaCompile, Set<File> generatedSrcDirs) {
+    CompileOptions options = javaCompile.getOptions();
+    if (GradleVersion.current().compareTo(GradleVersion.version("6.3")) >= 0) {
+      Directory generatedDir = options.getGeneratedSourceOutputDirectory().getOrNull();
+      if (generatedDir != null) {
+        generatedSrcDirs.add(generatedDir.getAsFile());
+      }
+    } else if (GradleVersion.current().compareTo(GradleVersion.version("4.3")) >= 0) {
+      File generatedDir = options.getAnnotationProcessorGeneratedSourcesDirectory();
+      if (generatedDir != null) {
+        generatedSrcDirs.add(generatedDir);
       }
     }
   }
 
-  private void addGeneratedSourceDirs(Project project, SourceSet sourceSet,
+  private void addGeneratedSourceDirs(String taskKey, JavaCompile javaCompile,
       Set<File> srcDirs, Set<File> generatedSrcDirs) {
-    JavaCompile javaCompile = getJavaCompileTask(project, sourceSet);
-    if (javaCompile != null) {
-      Set<File> filesToCompile = javaCompile.getSource().getFiles();
-      for (File file : filesToCompile) {
-        if (canSkipInferSourceRoot(file, srcDirs, generatedSrcDirs)) {
-          continue;
-        }
-
-        // the file is not in the source directories, so it must be a generated file.
-        // we need to find the source directory for the generated file.
-        File srcDir = findSourceDirForGeneratedFile(file);
-        if (srcDir != null) {
-          generatedSrcDirs.add(srcDir);
-        }
+    SourceRootIndex knownRoots = new SourceRootIndex();
+    srcDirs.forEach(knownRoots::add);
+    generatedSrcDirs.forEach(knownRoots::add);
+
+    // the files of a directory share the same package, so the first file of each
+    // directory with a matching package declaration is enough to infer its source root.
+    Map<File, List<File>> javaFilesByDir = new LinkedHashMap<>();
+    for (File file : javaCompile.getSource().getFiles()) {
+      if (file.getName().endsWith(".java")) {
+        javaFilesByDir.computeIfAbsent(file.getParentFile(), dir -> new ArrayList<>())
+            .add(file);
       }
     }
-  }
-
-  /**
-   * Skip the source root inference if:
-   * <ul>
-   * <li>File is not a Java file.</li>
-   * <li>File already belongs to srcDirs.</li>
-   * <li>File already belongs to generatedSrcDirs.</li>
-   * </ul>
-   * Return <code>true</code> if the source root inference can be skipped.
-   */
-  private boolean canSkipInferSourceRoot(File sourceFile, Set<File> srcDirs,
-      Set<File> generatedSrcDirs) {
-    if (!sourceFile.isFile() || !sourceFile.exists() || !sourceFile.getName().endsWith(".java")) {
-      return true;
-    }
-
-    if (srcDirs.stream().anyMatch(dir -> sourceFile.getAbsolutePath()
-        .startsWith(dir.getAbsolutePath()))) {
-      return true;
-    }
-
-    return generatedSrcDirs.stream().anyMatch(dir -> sourceFile.getAbsolutePath()
-        .startsWith(dir.getAbsolutePath()));
-  }
+    InferredSourceRoots.Scan scan = INFERRED_SOURCE_ROOTS.scan(taskKey);
+    for (Map.Entry<File, List<File>> entry : javaFilesByDir.entrySet()) {
+      if (knownRoots.contains(entry.getKey())) {
+        continue;
+      }
 
-  /**
-   * read the file content and find the package declaration.
-   * Then find the source directory that contains the package declaration.
-   * If the package declaration is not found, then return <code>null</code>.
-   */
-  private File findSourceDirForGeneratedFile(File file) {
-    Pattern packagePattern = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;\\s*$");
-    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        Matcher matcher = packagePattern.matcher(line);
-        if (matcher.matches()) {
-          String packageName = matcher.group(1);
-          String relativeToRoot = packageName.replace(".", File.separator)
-              .concat(File.separator).concat(file.getName());
-          String absolutePath = file.getAbsolutePath();
-          if (!absolutePath.endsWith(relativeToRoot)) {
-            return null;
-          }
-          return new File(absolutePath.substring(
-                0, absolutePath.length() - relativeToRoot.length()));
-        }
+      // the file is not in the source directories, so it must be a generated file.
+      // we need to find the source directory for the generated file.
+      File srcDir = scan.getSourceDir(entry.getKey(), entry.getValue());
+      if (srcDir != null) {
+        generatedSrcDirs.add(srcDir);
+        knownRoots.add(srcDir);
       }
-    } catch (IOException e) {
-      return null;
     }
-
-    return null;
+    scan.finish();
   }
 
   private DefaultJavaCompileSpec getJavaCompileSpec(JavaCompile javaCompile) {
@@ -14,12 +14,20 @@ import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.UnknownTaskException;
 import org.gradle.api.tasks.SourceSet;
+import org.gradle.util.GradleVersion;
 
 /**
  * The language model builder for different languages.
  */
 public abstract class LanguageModelBuilder {
-  public abstract boolean appliesFor(Project project, SourceSet sourceSet);
+  /**
+   * Whether the language applies for the source set, i.e. the project has the compile task
+   * of the language for it. The task names are read once per project by the caller, so no
+   * task is created or configured.
+   */
+  public boolean appliesFor(SourceSet sourceSet, Set<String> taskNames) {
+    return taskNames.contains(getLanguageCompileTaskName(sourceSet));
+  }
 
   public abstract SupportedLanguage<?> getLanguage();
 
@@ -35,12 +43,23 @@ public abstract class LanguageModelBuilder {
   public abstract LanguageExtension getExtensionsFor(Project project, SourceSet sourceSet,
       Set<GradleModuleDependency> moduleDependencies);
 
+  /**
+   * Return the compile task of the language for the source set. It is only asked for the
+   * source sets the language applies for, and no other task is realized.
+   */
   protected Task getLanguageCompileTask(Project project, SourceSet sourceSet) {
-    String taskName = sourceSet.getCompileTaskName(getLanguage().getGradleName());
+    String taskName = getLanguageCompileTaskName(sourceSet);
     try {
+      if (GradleVersion.current().compareTo(GradleVersion.version("4.9")) >= 0) {
+        return project.getTasks().named(taskName).get();
+      }
       return project.getTasks().getByName(taskName);
     } catch (UnknownTaskException e) {
       return null;
     }
   }
+
+  public String getLanguageCompileTaskName(SourceSet sourceSet) {
+    return sourceSet.getCompileTaskName(getLanguage().getGradleName());
+  }
 }
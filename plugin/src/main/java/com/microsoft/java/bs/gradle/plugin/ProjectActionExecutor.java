@@ -0,0 +1,122 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.plugin;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.internal.Factory;
+import org.gradle.internal.work.WorkerLeaseService;
+import org.gradle.util.GradleVersion;
+
+/**
+ * Runs an action for each project of the build. When enabled, the projects are processed
+ * concurrently on a bounded pool of Gradle worker threads, each holding the lock of the
+ * project it works on.
+ */
+public class ProjectActionExecutor {
+
+  private ProjectActionExecutor() {}
+
+  /**
+   * Whether the projects may be processed concurrently. Gradle only hands out separate
+   * project locks when the build runs with {@code --parallel}.
+   */
+  static boolean isEnabled() {
+    return Boolean.getBoolean("bsp.gradle.parallelDependencies")
+        && GradleVersion.current().compareTo(GradleVersion.version("8.0")) >= 0;
+  }
+
+  /**
+   * Apply the action to each project and return the results in the order of the projects.
+   */
+  public static <T> Map<Project, T> run(Collection<Project> projects,
+      Function<Project, T> action) {
+    if (projects.size() > 1 && isEnabled()) {
+      try {
+        Map<Project, T> results = runConcurrently(projects, action);
+        if (results != null) {
+          return results;
+        }
+      } catch (LinkageError | ClassCastException | IllegalArgumentException e) {
+        // the internal Gradle API is not the expected one, e.g. a changed method or an
+        // UnknownServiceException, so process the projects one by one instead.
+        projects.iterator().next().getLogger().info(
+            "Cannot collect the projects concurrently, falling back to one by one.", e);
+      }
+    }
+    Map<Project, T> results = new LinkedHashMap<>();
+    for (Project project : projects) {
+      results.put(project, action.apply(project));
+    }
+    return results;
+  }
+
+  /**
+   * Apply the action to the projects on worker threads, or return {@code null} if the build
+   * does not run in parallel.
+   */
+  private static <T> Map<Project, T> runConcurrently(Collection<Project> projects,
+      Function<Project, T> action) {
+    WorkerLeaseService workerLeaseService = ((ProjectInternal) projects.iterator().next())
+        .getServices().get(WorkerLeaseService.class);
+    if (!workerLeaseService.getAllowsParallelExecution()) {
+      return null;
+    }
+    int threads = Math.max(1, Math.min(projects.size(), workerLeaseService.getMaxWorkerCount()));
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable,
+          "Build Server Project Worker " + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      Map<Project, Future<T>> futures = new LinkedHashMap<>();
+      Map<Project, T> results = new LinkedHashMap<>();
+      for (Project project : projects) {
+        futures.put(project, executor.submit(() -> workerLeaseService.runAsWorkerThread(
+            (Factory<T>) () -> ((ProjectInternal) project).getOwner()
+                .fromMutableState(p -> action.apply(project)))));
+      }
+      // release the locks held by this thread while waiting, the workers may need them.
+      workerLeaseService.blocking(() -> {
+        for (Map.Entry<Project, Future<T>> entry : futures.entrySet()) {
+          results.put(entry.getKey(), getResult(entry.getValue()));
+        }
+      });
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static <T> T getResult(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Interrupted while collecting the projects.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new GradleException("Failed to collect the project.", cause);
+    }
+  }
+}
@@ -34,11 +34,6 @@ import com.microsoft.java.bs.gradle.model.SupportedLanguages;
  */
 public class ScalaLanguageModelBuilder extends LanguageModelBuilder {
 
-  @Override
-  public boolean appliesFor(Project project, SourceSet sourceSet) {
-    return getScalaCompileTask(project, sourceSet) != null;
-  }
-
   @Override
   public SupportedLanguage<ScalaExtension> getLanguage() {
     return SupportedLanguages.SCALA;
@@ -0,0 +1,34 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.plugin;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A set of source roots which tells whether a file is under any of them, walking up the
+ * parents of the file instead of comparing it with every root.
+ */
+class SourceRootIndex {
+
+  private final Set<String> roots = new HashSet<>();
+
+  void add(File root) {
+    roots.add(root.getAbsolutePath());
+  }
+
+  /**
+   * Whether the file is one of the roots or below one of them.
+   */
+  boolean contains(File file) {
+    for (File current = file.getAbsoluteFile(); current != null;
+        current = current.getParentFile()) {
+      if (roots.contains(current.getPath())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
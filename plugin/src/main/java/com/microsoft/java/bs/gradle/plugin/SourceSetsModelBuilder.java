@@ -6,22 +6,30 @@ package com.microsoft.java.bs.gradle.plugin;
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.GradleClassifierArtifacts;
+import com.microsoft.java.bs.gradle.model.GradleProjectSourceSetsMetadata;
 import com.microsoft.java.bs.gradle.model.GradleSourceSet;
 import com.microsoft.java.bs.gradle.model.GradleSourceSetsMetadata;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
-import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.file.CopySpec;
 import org.gradle.api.file.Directory;
-import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.SourceDirectorySet;
 import org.gradle.api.internal.file.copy.DefaultCopySpec;
 import org.gradle.api.tasks.SourceSet;
@@ -33,10 +41,12 @@ import org.gradle.api.tasks.testing.Test;
 import org.gradle.tooling.provider.model.ToolingModelBuilder;
 import org.gradle.util.GradleVersion;
 
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleClassifierArtifacts;
 import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSet;
 import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSetsMetadata;
 import com.microsoft.java.bs.gradle.model.LanguageExtension;
 import com.microsoft.java.bs.gradle.plugin.dependency.DependencyCollector;
+import com.microsoft.java.bs.gradle.plugin.dependency.ResolvedComponentCache;
 
 /**
  * The model builder for Gradle source sets.
@@ -44,31 +54,53 @@ import com.microsoft.java.bs.gradle.plugin.dependency.DependencyCollector;
 public class SourceSetsModelBuilder implements ToolingModelBuilder {
   @Override
   public boolean canBuild(String modelName) {
-    return modelName.equals(GradleSourceSetsMetadata.class.getName());
+    return modelName.equals(GradleSourceSetsMetadata.class.getName())
+        || modelName.equals(GradleProjectSourceSetsMetadata.class.getName())
+        || modelName.equals(GradleClassifierArtifacts.class.getName());
   }
 
   @Override
-  public Object buildAll(String modelName, Project rootProject) {
+  public Object buildAll(String modelName, Project modelProject) {
+    if (modelName.equals(GradleClassifierArtifacts.class.getName())) {
+      return buildClassifierArtifacts(modelProject);
+    }
 
     Map<GradleSourceSet, List<File>> sourceSetsToClasspath = new HashMap<>();
     Map<File, GradleSourceSet> outputsToSourceSet = new HashMap<>();
 
-    Set<Project> allProject = rootProject.getAllprojects();
+    // the project model only covers the requested project, the build model
+    // is requested for the root project and covers all of its projects.
+    Set<Project> allProject;
+    if (modelName.equals(GradleProjectSourceSetsMetadata.class.getName())) {
+      allProject = Collections.singleton(modelProject);
+    } else {
+      allProject = modelProject.getAllprojects();
+    }
     SourceSetCache cache = new SourceSetCache();
     // this set is used to eliminate the source, resource and output
     // directories from the module dependencies.
     Set<File> exclusionFromDependencies = new HashSet<>();
+    List<LanguageModelBuilder> supportedLanguageBuilders =
+        GradleBuildServerPlugin.getSupportedLanguageBuilders();
+    // the language builders which apply for each source set.
+    Map<SourceSet, List<LanguageModelBuilder>> languageBuilders = new HashMap<>();
+    Map<Project, SourceSetContainer> sourceSetsByProject = new LinkedHashMap<>();
     // mapping Gradle source set to our customized model.
     for (Project project : allProject) {
       SourceSetContainer sourceSets = getSourceSetContainer(project);
       if (sourceSets == null || sourceSets.isEmpty()) {
         continue;
       }
+      sourceSetsByProject.put(project, sourceSets);
+      Set<File> testClassesDirs = getTestClassesDirs(project);
+      // the names include the registered tasks which are not created yet.
+      Set<String> projectTaskNames = project.getTasks().getNames();
       sourceSets.forEach(sourceSet -> {
         DefaultGradleSourceSet gradleSourceSet = new DefaultGradleSourceSet();
         cache.addGradleSourceSet(sourceSet, gradleSourceSet);
         cache.addProject(sourceSet, project);
         gradleSourceSet.setBuildTargetDependencies(new HashSet<>());
+        gradleSourceSet.setArchiveOutputFiles(new HashSet<>());
         gradleSourceSet.setGradleVersion(project.getGradle().getGradleVersion());
         gradleSourceSet.setProjectName(project.getName());
         String projectPath = project.getPath();
@@ -92,14 +124,13 @@ public class SourceSetsModelBuilder implements ToolingModelBuilder {
         // source
         Set<File> srcDirs = new HashSet<>();
         Set<File> generatedSrcDirs = new HashSet<>();
-        for (LanguageModelBuilder languageModelBuilder :
-            GradleBuildServerPlugin.SUPPORTED_LANGUAGE_BUILDERS) {
-          if (languageModelBuilder.appliesFor(project, sourceSet)) {
-            Task compileTask = languageModelBuilder.getLanguageCompileTask(project, sourceSet);
-            if (compileTask != null) {
-              String compileTaskName = getFullTaskName(projectPath, compileTask.getName());
-              taskNames.add(compileTaskName);
-            }
+        List<LanguageModelBuilder> applyingBuilders = new LinkedList<>();
+        languageBuilders.put(sourceSet, applyingBuilders);
+        for (LanguageModelBuilder languageModelBuilder : supportedLanguageBuilders) {
+          if (languageModelBuilder.appliesFor(sourceSet, projectTaskNames)) {
+            applyingBuilders.add(languageModelBuilder);
+            taskNames.add(getFullTaskName(projectPath,
+                languageModelBuilder.getLanguageCompileTaskName(sourceSet)));
             srcDirs.addAll(languageModelBuilder.getSourceFoldersFor(project, sourceSet));
             generatedSrcDirs.addAll(
                 languageModelBuilder.getGeneratedSourceFoldersFor(project, sourceSet));
@@ -142,34 +173,30 @@ public class SourceSetsModelBuilder implements ToolingModelBuilder {
         }
 
         // tests
-        if (sourceOutputDir != null) {
-          TaskCollection<Test> testTasks = project.getTasks().withType(Test.class);
-          for (Test testTask : testTasks) {
-            if (GradleVersion.current().compareTo(GradleVersion.version("4.0")) >= 0) {
-              FileCollection files = testTask.getTestClassesDirs();
-              if (files.contains(sourceOutputDir)) {
-                gradleSourceSet.setHasTests(true);
-                break;
-              }
-            } else {
-              try {
-                Method getTestClassesDir = testTask.getClass().getMethod("getTestClassesDir");
-                Object testClassesDir = getTestClassesDir.invoke(testTask);
-                if (sourceOutputDir.equals(testClassesDir)) {
-                  gradleSourceSet.setHasTests(true);
-                  break;
-                }
-              } catch (NoSuchMethodException | SecurityException | IllegalAccessException
-                       | IllegalArgumentException | InvocationTargetException  e) {
-                // ignore
-              }
-            }
-          }
+        if (sourceOutputDir != null && testClassesDirs.contains(sourceOutputDir)) {
+          gradleSourceSet.setHasTests(true);
         }
       });
+    }
 
-      if (!sourceSets.isEmpty()) {
-        gatherArchiveTasks(outputsToSourceSet, cache, project, sourceSets);
+    // the archives are only needed for the classpath entries which are not the outputs
+    // of a source set. Other builds may depend on the archives of an included build, and
+    // other projects on the archives of a single project model, so those map them all.
+    Set<File> unmatchedClasspath = null;
+    if (modelName.equals(GradleSourceSetsMetadata.class.getName())
+        && modelProject.getGradle().getParent() == null) {
+      unmatchedClasspath = getUnmatchedClasspath(modelProject.getRootDir(),
+          sourceSetsToClasspath.values(), outputsToSourceSet.keySet());
+    }
+    if (unmatchedClasspath == null || !unmatchedClasspath.isEmpty()) {
+      for (Map.Entry<Project, SourceSetContainer> entry : sourceSetsByProject.entrySet()) {
+        // the archive tasks are only realized for the projects building an unmatched entry.
+        if (unmatchedClasspath != null
+            && !containsAny(getBuildDir(entry.getKey()), unmatchedClasspath)) {
+          continue;
+        }
+        gatherArchiveTasks(outputsToSourceSet, cache, entry.getKey(), entry.getValue(),
+            unmatchedClasspath);
       }
     }
 
@@ -187,14 +214,11 @@ public class SourceSetsModelBuilder implements ToolingModelBuilder {
       }
 
       Map<String, LanguageExtension> extensions = new HashMap<>();
-      for (LanguageModelBuilder languageModelBuilder :
-          GradleBuildServerPlugin.SUPPORTED_LANGUAGE_BUILDERS) {
-        if (languageModelBuilder.appliesFor(project, sourceSet)) {
-          LanguageExtension extension = languageModelBuilder.getExtensionsFor(project, sourceSet,
-              gradleSourceSet.getModuleDependencies());
-          if (extension != null) {
-            extensions.put(languageModelBuilder.getLanguageId(), extension);
-          }
+      for (LanguageModelBuilder languageModelBuilder : languageBuilders.get(sourceSet)) {
+        LanguageExtension extension = languageModelBuilder.getExtensionsFor(project, sourceSet,
+            gradleSourceSet.getModuleDependencies());
+        if (extension != null) {
+          extensions.put(languageModelBuilder.getLanguageId(), extension);
         }
       }
       gradleSourceSet.setExtensions(extensions);
@@ -204,16 +228,78 @@ public class SourceSetsModelBuilder implements ToolingModelBuilder {
   }
 
   private void setModuleDependencies(SourceSetCache cache, Set<File> exclusionFromDependencies) {
+    // collect the dependencies of all source sets of a project first, so that the
+    // sources and javadoc jars of the project are resolved at once.
+    Map<Project, List<SourceSet>> sourceSetsByProject = new LinkedHashMap<>();
     for (SourceSet sourceSet : cache.getAllSourceSets()) {
-      DefaultGradleSourceSet gradleSourceSet = cache.getGradleSourceSet(sourceSet);
-      if (gradleSourceSet == null) {
-        continue;
+      if (cache.getGradleSourceSet(sourceSet) != null) {
+        sourceSetsByProject.computeIfAbsent(cache.getProject(sourceSet),
+            p -> new LinkedList<>()).add(sourceSet);
       }
-      DependencyCollector collector = new DependencyCollector(cache.getProject(sourceSet),
-          exclusionFromDependencies);
+    }
+
+    // the modules are shared by the projects of the build, each of them is only resolved
+    // and converted once. The server may resolve the sources and javadoc jars later on
+    // demand.
+    ResolvedComponentCache resolvedComponents = new ResolvedComponentCache();
+    boolean skipClassifierArtifacts = Boolean.getBoolean("bsp.gradle.skipClassifierArtifacts");
+    Map<Project, Map<SourceSet, DependencyCollector>> collectorsByProject =
+        ProjectActionExecutor.run(sourceSetsByProject.keySet(), project -> {
+          Map<SourceSet, DependencyCollector> collectors = new LinkedHashMap<>();
+          for (SourceSet sourceSet : sourceSetsByProject.get(project)) {
+            DependencyCollector collector = new DependencyCollector(project,
+                exclusionFromDependencies);
+            collector.collectByConfigurationNames(getClasspathConfigurationNames(sourceSet));
+            collectors.put(sourceSet, collector);
+          }
+          if (!skipClassifierArtifacts) {
+            resolveClassifierArtifacts(resolvedComponents, project, collectors.values());
+          }
+          return collectors;
+        });
+    for (Map<SourceSet, DependencyCollector> collectors : collectorsByProject.values()) {
+      collectors.forEach((sourceSet, collector) ->
+          cache.getGradleSourceSet(sourceSet).setModuleDependencies(
+              collector.getModuleDependencies(resolvedComponents)));
+    }
+  }
+
+  private void resolveClassifierArtifacts(ResolvedComponentCache resolvedComponents,
+      Project project, Collection<DependencyCollector> collectors) {
+    List<Configuration> configurations = new LinkedList<>();
+    Set<ModuleComponentIdentifier> ids = new LinkedHashSet<>();
+    for (DependencyCollector collector : collectors) {
+      configurations.addAll(collector.getConfigurations());
+      ids.addAll(collector.getModuleComponentIds());
+    }
+    resolvedComponents.resolveClassifierArtifacts(project, configurations, ids);
+  }
+
+  /**
+   * Resolve the sources and javadoc jars of the external modules of all source sets
+   * of the project.
+   */
+  private GradleClassifierArtifacts buildClassifierArtifacts(Project project) {
+    Map<String, List<Artifact>> classifierArtifacts = new HashMap<>();
+    SourceSetContainer sourceSets = getSourceSetContainer(project);
+    if (sourceSets == null) {
+      return new DefaultGradleClassifierArtifacts(classifierArtifacts);
+    }
+
+    List<DependencyCollector> collectors = new LinkedList<>();
+    for (SourceSet sourceSet : sourceSets) {
+      DependencyCollector collector = new DependencyCollector(project, Collections.emptySet());
       collector.collectByConfigurationNames(getClasspathConfigurationNames(sourceSet));
-      gradleSourceSet.setModuleDependencies(collector.getModuleDependencies());
+      collectors.add(collector);
     }
+    ResolvedComponentCache resolvedComponents = new ResolvedComponentCache();
+    resolveClassifierArtifacts(resolvedComponents, project, collectors);
+    resolvedComponents.getClassifierArtifacts().forEach((id, artifacts) -> {
+      ModuleComponentIdentifier moduleId = (ModuleComponentIdentifier) id;
+      classifierArtifacts.put(GradleClassifierArtifacts.getModuleKey(moduleId.getGroup(),
+          moduleId.getModule(), moduleId.getVersion()), artifacts);
+    });
+    return new DefaultGradleClassifierArtifacts(classifierArtifacts);
   }
 
   private SourceSetContainer getSourceSetContainer(Project project) {
@@ -300,15 +386,89 @@ public class SourceSetsModelBuilder implements ToolingModelBuilder {
     return null;
   }
 
+  /**
+   * Return the class directories of all test tasks of the project. The test tasks have to
+   * be realized for that, since only they know which classes they run. Tasks of any other
+   * type are not touched.
+   */
+  private Set<File> getTestClassesDirs(Project project) {
+    Set<File> testClassesDirs = new HashSet<>();
+    for (Test testTask : project.getTasks().withType(Test.class)) {
+      if (GradleVersion.current().compareTo(GradleVersion.version("4.0")) >= 0) {
+        testClassesDirs.addAll(testTask.getTestClassesDirs().getFiles());
+      } else {
+        try {
+          Method getTestClassesDir = testTask.getClass().getMethod("getTestClassesDir");
+          Object testClassesDir = getTestClassesDir.invoke(testTask);
+          if (testClassesDir instanceof File) {
+            testClassesDirs.add((File) testClassesDir);
+          }
+        } catch (NoSuchMethodException | SecurityException | IllegalAccessException
+                 | IllegalArgumentException | InvocationTargetException  e) {
+          // ignore
+        }
+      }
+    }
+    return testClassesDirs;
+  }
+
+  /**
+   * Return the classpath entries in the build directory which are not the output of any
+   * source set, they may be archives of the build.
+   */
+  private Set<File> getUnmatchedClasspath(File rootDir, Collection<List<File>> classpaths,
+      Set<File> outputs) {
+    Path rootPath = rootDir.toPath().toAbsolutePath();
+    Set<File> unmatchedClasspath = new HashSet<>();
+    for (List<File> classpath : classpaths) {
+      for (File entry : classpath) {
+        if (!outputs.contains(entry) && entry.toPath().toAbsolutePath().startsWith(rootPath)) {
+          unmatchedClasspath.add(entry);
+        }
+      }
+    }
+    return unmatchedClasspath;
+  }
+
+  private File getBuildDir(Project project) {
+    if (GradleVersion.current().compareTo(GradleVersion.version("4.1")) >= 0) {
+      return project.getLayout().getBuildDirectory().get().getAsFile();
+    }
+    return project.getBuildDir();
+  }
+
+  private boolean containsAny(File dir, Set<File> files) {
+    Path dirPath = dir.toPath().toAbsolutePath();
+    for (File file : files) {
+      if (file.toPath().toAbsolutePath().startsWith(dirPath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * get all archive tasks for this project and maintain the archive file
    * to source set mapping.
+   *
+   * @param archiveFiles the archives to map, {@code null} to map all archives.
    */
   private void gatherArchiveTasks(Map<File, GradleSourceSet> outputsToSourceSet,
-      SourceSetCache cache, Project project, SourceSetContainer sourceSets) {
+      SourceSetCache cache, Project project, SourceSetContainer sourceSets,
+      Set<File> archiveFiles) {
     TaskCollection<AbstractArchiveTask> archiveTasks =
         project.getTasks().withType(AbstractArchiveTask.class);
     for (AbstractArchiveTask archiveTask : archiveTasks) {
+      File archiveFile;
+      if (GradleVersion.current().compareTo(GradleVersion.version("5.1")) >= 0) {
+        archiveFile = archiveTask.getArchiveFile().get().getAsFile();
+      } else {
+        archiveFile = archiveTask.getArchivePath();
+      }
+      // only walk the copy specs of the archives on the classpath.
+      if (archiveFiles != null && !archiveFiles.contains(archiveFile)) {
+        continue;
+      }
       Set<Object> archiveSourcePaths = getArchiveSourcePaths(archiveTask.getRootSpec());
       for (Object sourcePath : archiveSourcePaths) {
         sourceSets.forEach(sourceSet -> {
@@ -318,13 +478,8 @@ public class SourceSetsModelBuilder implements ToolingModelBuilder {
           }
 
           if (sourceSet.getOutput().equals(sourcePath)) {
-            File archiveFile;
-            if (GradleVersion.current().compareTo(GradleVersion.version("5.1")) >= 0) {
-              archiveFile = archiveTask.getArchiveFile().get().getAsFile();
-            } else {
-              archiveFile = archiveTask.getArchivePath();
-            }
             outputsToSourceSet.put(archiveFile, gradleSourceSet);
+            gradleSourceSet.getArchiveOutputFiles().add(archiveFile);
           }
         });
       }
@@ -0,0 +1,152 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.plugin.dependency;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ArtifactCollection;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.ArtifactResolutionResult;
+import org.gradle.api.artifacts.result.ArtifactResult;
+import org.gradle.api.artifacts.result.ComponentArtifactsResult;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.attributes.Category;
+import org.gradle.api.attributes.DocsType;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.jvm.JvmLibrary;
+import org.gradle.language.base.artifact.SourcesArtifact;
+import org.gradle.language.java.artifact.JavadocArtifact;
+import org.gradle.util.GradleVersion;
+
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.impl.DefaultArtifact;
+
+/**
+ * Resolves the sources and javadoc jars of many modules of a project at once.
+ */
+public class ClassifierArtifactResolver {
+
+  private final Project project;
+
+  public ClassifierArtifactResolver(Project project) {
+    this.project = project;
+  }
+
+  /**
+   * Resolve the sources and javadoc jars of the given modules.
+   *
+   * <p>On Gradle 7.5+ the documentation variants are selected from the given
+   * configurations first. A module with any such variant is published with Gradle module
+   * metadata, which declares all its documentation, so only the modules without any, e.g.
+   * those only published with a POM, are resolved by one artifact resolution query. The
+   * public API does not tell which modules have Gradle module metadata before, so the
+   * POM-only modules also go through the variant selection. It matches their already
+   * resolved metadata without downloading anything.
+   *
+   * @return the classifier artifacts of each module which has any.
+   */
+  public Map<ComponentIdentifier, List<Artifact>> resolve(
+      Collection<Configuration> configurations, Set<ModuleComponentIdentifier> ids) {
+    Map<ComponentIdentifier, File> sources = new HashMap<>();
+    Map<ComponentIdentifier, File> javadocs = new HashMap<>();
+    if (ids.isEmpty()) {
+      return new HashMap<>();
+    }
+
+    if (GradleVersion.current().compareTo(GradleVersion.version("7.5")) >= 0) {
+      for (Configuration configuration : configurations) {
+        collectDocumentation(configuration, ids, DocsType.SOURCES, sources);
+        collectDocumentation(configuration, ids, DocsType.JAVADOC, javadocs);
+      }
+    }
+
+    Set<ComponentIdentifier> unresolvedIds = new LinkedHashSet<>();
+    for (ModuleComponentIdentifier id : ids) {
+      if (!sources.containsKey(id) && !javadocs.containsKey(id)) {
+        unresolvedIds.add(id);
+      }
+    }
+    if (!unresolvedIds.isEmpty()) {
+      ArtifactResolutionResult resolutionResult = project.getDependencies()
+          .createArtifactResolutionQuery()
+          .forComponents(unresolvedIds)
+          .withArtifacts(
+            JvmLibrary.class /* componentType */,
+            JavadocArtifact.class, SourcesArtifact.class /*artifactTypes*/
+          )
+          .execute();
+      for (ComponentArtifactsResult component : resolutionResult.getResolvedComponents()) {
+        putArtifact(sources, component, SourcesArtifact.class);
+        putArtifact(javadocs, component, JavadocArtifact.class);
+      }
+    }
+
+    Map<ComponentIdentifier, List<Artifact>> artifacts = new HashMap<>();
+    for (ModuleComponentIdentifier id : ids) {
+      List<Artifact> classifierArtifacts = new LinkedList<>();
+      File sourceJar = sources.get(id);
+      if (sourceJar != null) {
+        classifierArtifacts.add(new DefaultArtifact(sourceJar.toURI(), "sources"));
+      }
+      File javaDocJar = javadocs.get(id);
+      if (javaDocJar != null) {
+        classifierArtifacts.add(new DefaultArtifact(javaDocJar.toURI(), "javadoc"));
+      }
+      if (!classifierArtifacts.isEmpty()) {
+        artifacts.put(id, classifierArtifacts);
+      }
+    }
+    return artifacts;
+  }
+
+  /**
+   * Reselect the documentation variants of the resolved modules of the configuration.
+   */
+  private void collectDocumentation(Configuration configuration,
+      Set<ModuleComponentIdentifier> ids, String docsType, Map<ComponentIdentifier, File> files) {
+    ObjectFactory objects = project.getObjects();
+    ArtifactCollection artifacts = configuration.getIncoming()
+        .artifactView(viewConfiguration -> {
+          viewConfiguration.withVariantReselection();
+          viewConfiguration.lenient(true);
+          // skip the modules found in the previous configurations.
+          viewConfiguration.componentFilter(id -> ids.contains(id) && !files.containsKey(id));
+          viewConfiguration.attributes(attributes -> {
+            attributes.attribute(Category.CATEGORY_ATTRIBUTE,
+                objects.named(Category.class, Category.DOCUMENTATION));
+            attributes.attribute(DocsType.DOCS_TYPE_ATTRIBUTE,
+                objects.named(DocsType.class, docsType));
+          });
+        })
+        .getArtifacts();
+    for (ResolvedArtifactResult artifact : artifacts.getArtifacts()) {
+      files.putIfAbsent(artifact.getId().getComponentIdentifier(), artifact.getFile());
+    }
+  }
+
+  private void putArtifact(Map<ComponentIdentifier, File> files,
+      ComponentArtifactsResult component,
+      Class<? extends org.gradle.api.component.Artifact> artifactClass) {
+    if (files.containsKey(component.getId())) {
+      return;
+    }
+    for (ArtifactResult artifact : component.getArtifacts(artifactClass)) {
+      if (artifact instanceof ResolvedArtifactResult) {
+        // TODO: only return the first found result, might be wrong!
+        files.put(component.getId(), ((ResolvedArtifactResult) artifact).getFile());
+        return;
+      }
+    }
+  }
+}
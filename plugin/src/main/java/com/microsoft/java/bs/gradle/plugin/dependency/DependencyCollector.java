@@ -7,7 +7,9 @@ import java.io.File;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import org.gradle.api.Project;
@@ -16,18 +18,13 @@ import org.gradle.api.artifacts.ResolvedArtifact;
 import org.gradle.api.artifacts.ResolvedConfiguration;
 import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
-import org.gradle.api.artifacts.result.ArtifactResolutionResult;
-import org.gradle.api.artifacts.result.ArtifactResult;
-import org.gradle.api.artifacts.result.ComponentArtifactsResult;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.result.ResolvedArtifactResult;
 import org.gradle.api.specs.Specs;
 import org.gradle.api.tasks.SourceSet;
 import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
 import org.gradle.internal.component.local.model.ComponentFileArtifactIdentifier;
 import org.gradle.internal.component.local.model.OpaqueComponentArtifactIdentifier;
-import org.gradle.jvm.JvmLibrary;
-import org.gradle.language.base.artifact.SourcesArtifact;
-import org.gradle.language.java.artifact.JavadocArtifact;
 
 import com.microsoft.java.bs.gradle.model.Artifact;
 import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
@@ -44,7 +41,8 @@ public class DependencyCollector {
 
   private final Project project;
   private final Set<File> exclusionFromDependencies;
-  private final Set<GradleModuleDependency> moduleDependencies;
+  private final Set<DependencyEntry> dependencies;
+  private final List<Configuration> configurations;
 
   /**
    * Instantiates a new dependency collector.
@@ -52,20 +50,62 @@ public class DependencyCollector {
   public DependencyCollector(Project project, Set<File> exclusionFromDependencies) {
     this.project = project;
     this.exclusionFromDependencies = exclusionFromDependencies;
-    this.moduleDependencies = new LinkedHashSet<>();
+    this.dependencies = new LinkedHashSet<>();
+    this.configurations = new LinkedList<>();
   }
 
-  public Set<GradleModuleDependency> getModuleDependencies() {
+  /**
+   * Return the collected dependencies in classpath order.
+   *
+   * @param cache the modules resolved for the whole build, including their sources and
+   *     javadoc jars.
+   */
+  public Set<GradleModuleDependency> getModuleDependencies(ResolvedComponentCache cache) {
+    Set<GradleModuleDependency> moduleDependencies = new LinkedHashSet<>();
+    for (DependencyEntry entry : dependencies) {
+      if (entry.dependency != null) {
+        moduleDependencies.add(entry.dependency);
+      } else {
+        moduleDependencies.add(cache.getModuleDependency(entry.moduleId, entry.file));
+      }
+    }
     return moduleDependencies;
   }
 
+  /**
+   * Return the modules whose sources and javadoc jars have to be resolved.
+   */
+  public Set<ModuleComponentIdentifier> getModuleComponentIds() {
+    Set<ModuleComponentIdentifier> ids = new LinkedHashSet<>();
+    for (DependencyEntry entry : dependencies) {
+      if (entry.moduleId != null) {
+        ids.add(entry.moduleId);
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Return the resolved configurations.
+   */
+  public List<Configuration> getConfigurations() {
+    return configurations;
+  }
+
   /**
    * Resolve and collect dependencies from a {@link SourceSet}.
    */
   public void collectByConfigurationNames(Set<String> configurationNames) {
+    // look the configurations up by name, in the name order of the container.
+    List<Configuration> namedConfigurations = new LinkedList<>();
+    for (String name : new TreeSet<>(configurationNames)) {
+      Configuration configuration = project.getConfigurations().findByName(name);
+      if (configuration != null) {
+        namedConfigurations.add(configuration);
+      }
+    }
     if (GradleVersion.current().compareTo(GradleVersion.version("3.3")) < 0) {
-      List<ResolvedConfiguration> configs = project.getConfigurations().stream()
-              .filter(configuration -> configurationNames.contains(configuration.getName()))
+      List<ResolvedConfiguration> configs = namedConfigurations.stream()
               .map(Configuration::getResolvedConfiguration)
               .collect(Collectors.toList());
       configs.stream().flatMap(config -> config.getResolvedArtifacts().stream())
@@ -75,10 +115,10 @@ public class DependencyCollector {
       configs.stream().flatMap(config -> config.getFiles(Specs.satisfyAll()).stream())
               .forEach(this::resolveFileDependency);
     } else {
-      project.getConfigurations()
-              .stream()
-              .filter(configuration -> configurationNames.contains(configuration.getName()))
+      namedConfigurations.stream()
               .filter(Configuration::isCanBeResolved)
+              .forEach(configurations::add);
+      configurations.stream()
               .flatMap(configuration -> getConfigurationArtifacts(configuration).stream())
               .filter(artifact -> !exclusionFromDependencies.contains(artifact.getFile()))
               .forEach(this::resolveArtifact);
@@ -119,74 +159,32 @@ public class DependencyCollector {
 
   private void resolveModuleArtifactDependency(ModuleComponentArtifactIdentifier artifactIdentifier,
       File resolvedArtifactFile) {
-    ArtifactResolutionResult resolutionResult = project.getDependencies()
-        .createArtifactResolutionQuery()
-        .forComponents(artifactIdentifier.getComponentIdentifier())
-        .withArtifacts(
-          JvmLibrary.class /* componentType */,
-          JavadocArtifact.class, SourcesArtifact.class /*artifactTypes*/
-        )
-        .execute();
-
-    List<Artifact> artifacts = new LinkedList<>();
-    if (resolvedArtifactFile != null) {
-      artifacts.add(new DefaultArtifact(resolvedArtifactFile.toURI(), null));
-    }
-
-    Set<ComponentArtifactsResult> resolvedComponents = resolutionResult.getResolvedComponents();
-    File sourceJar = getArtifact(resolvedComponents, SourcesArtifact.class);
-    if (sourceJar != null) {
-      artifacts.add(new DefaultArtifact(sourceJar.toURI(), "sources"));
-    }
-
-    File javaDocJar = getArtifact(resolvedComponents, JavadocArtifact.class);
-    if (javaDocJar != null) {
-      artifacts.add(new DefaultArtifact(javaDocJar.toURI(), "javadoc"));
-    }
-
-    moduleDependencies.add(new DefaultGradleModuleDependency(
-        artifactIdentifier.getComponentIdentifier().getGroup(),
-        artifactIdentifier.getComponentIdentifier().getModule(),
-        artifactIdentifier.getComponentIdentifier().getVersion(),
-        artifacts
-    ));
-  }
-
-  private File getArtifact(Set<ComponentArtifactsResult> resolvedComponents,
-      Class<? extends org.gradle.api.component.Artifact> artifactClass) {
-    for (ComponentArtifactsResult component : resolvedComponents) {
-      Set<ArtifactResult> artifacts = component.getArtifacts(artifactClass);
-      for (ArtifactResult artifact : artifacts) {
-        if (artifact instanceof ResolvedArtifactResult) {
-          // TODO: only return the first found result, might be wrong!
-          return ((ResolvedArtifactResult) artifact).getFile();
-        }
-      }
-    }
-    return null;
+    // the sources and javadoc jars are resolved later for all modules at once.
+    dependencies.add(new DependencyEntry(artifactIdentifier.getComponentIdentifier(),
+        resolvedArtifactFile, null));
   }
 
   private void resolveFileArtifactDependency(ComponentFileArtifactIdentifier artifactIdentifier,
       File resolvedArtifactFile) {
-    moduleDependencies.add(getFileArtifactDependency(
+    dependencies.add(new DependencyEntry(null, null, getFileArtifactDependency(
         artifactIdentifier.getCapitalizedDisplayName(),
         resolvedArtifactFile
-    ));
+    )));
   }
 
   private void resolveFileArtifactDependency(OpaqueComponentArtifactIdentifier artifactIdentifier,
       File resolvedArtifactFile) {
-    moduleDependencies.add(getFileArtifactDependency(
+    dependencies.add(new DependencyEntry(null, null, getFileArtifactDependency(
         artifactIdentifier.getCapitalizedDisplayName(),
         resolvedArtifactFile
-    ));
+    )));
   }
 
   private void resolveFileDependency(File resolvedArtifactFile) {
-    moduleDependencies.add(getFileArtifactDependency(
+    dependencies.add(new DependencyEntry(null, null, getFileArtifactDependency(
             resolvedArtifactFile.getName(),
             resolvedArtifactFile
-    ));
+    )));
   }
 
   private GradleModuleDependency getFileArtifactDependency(String displayName,
@@ -203,4 +201,40 @@ public class DependencyCollector {
         artifacts
     );
   }
+
+  /**
+   * A collected dependency, either a module whose classifier artifacts are not resolved
+   * yet or a finished file dependency.
+   */
+  private static class DependencyEntry {
+    private final ModuleComponentIdentifier moduleId;
+    private final File file;
+    private final GradleModuleDependency dependency;
+
+    DependencyEntry(ModuleComponentIdentifier moduleId, File file,
+        GradleModuleDependency dependency) {
+      this.moduleId = moduleId;
+      this.file = file;
+      this.dependency = dependency;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(moduleId, file, dependency);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      DependencyEntry other = (DependencyEntry) obj;
+      return Objects.equals(moduleId, other.moduleId)
+          && Objects.equals(file, other.file)
+          && Objects.equals(dependency, other.dependency);
+    }
+  }
 }
@@ -0,0 +1,96 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.plugin.dependency;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
+import com.microsoft.java.bs.gradle.model.impl.DefaultArtifact;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleModuleDependency;
+
+/**
+ * The external modules seen while building one model, shared by the dependency
+ * collectors of all source sets and projects, so that a module used everywhere is
+ * only resolved and converted once. The projects may be resolved concurrently.
+ */
+public class ResolvedComponentCache {
+
+  private final Set<ComponentIdentifier> resolvedIds = ConcurrentHashMap.newKeySet();
+
+  private final Map<ComponentIdentifier, List<Artifact>> classifierArtifacts =
+      new ConcurrentHashMap<>();
+
+  private final Map<ModuleComponentIdentifier, Map<File, GradleModuleDependency>> dependencies =
+      new HashMap<>();
+
+  /**
+   * Resolve the sources and javadoc jars of the modules which have not been resolved
+   * for any other project yet.
+   */
+  public void resolveClassifierArtifacts(Project project,
+      Collection<Configuration> configurations, Set<ModuleComponentIdentifier> ids) {
+    Set<ModuleComponentIdentifier> unresolvedIds = new LinkedHashSet<>();
+    for (ModuleComponentIdentifier id : ids) {
+      // claim the module, so that other projects do not resolve it again.
+      if (resolvedIds.add(id)) {
+        unresolvedIds.add(id);
+      }
+    }
+    if (unresolvedIds.isEmpty()) {
+      return;
+    }
+    classifierArtifacts.putAll(
+        new ClassifierArtifactResolver(project).resolve(configurations, unresolvedIds));
+  }
+
+  /**
+   * Return the classifier artifacts of all the resolved modules.
+   */
+  public Map<ComponentIdentifier, List<Artifact>> getClassifierArtifacts() {
+    return classifierArtifacts;
+  }
+
+  /**
+   * Return the dependency on the given artifact of a module, including the sources and
+   * javadoc jars resolved so far.
+   */
+  public synchronized GradleModuleDependency getModuleDependency(ModuleComponentIdentifier id,
+      File resolvedArtifactFile) {
+    Map<File, GradleModuleDependency> dependenciesByFile =
+        dependencies.computeIfAbsent(id, key -> new HashMap<>());
+    GradleModuleDependency dependency = dependenciesByFile.get(resolvedArtifactFile);
+    if (dependency == null) {
+      List<Artifact> artifacts = new LinkedList<>();
+      if (resolvedArtifactFile != null) {
+        artifacts.add(new DefaultArtifact(resolvedArtifactFile.toURI(), null));
+      }
+      List<Artifact> resolvedClassifierArtifacts = classifierArtifacts.get(id);
+      if (resolvedClassifierArtifacts != null) {
+        artifacts.addAll(resolvedClassifierArtifacts);
+      }
+      dependency = new DefaultGradleModuleDependency(
+          id.getGroup(),
+          id.getModule(),
+          id.getVersion(),
+          artifacts
+      );
+      dependenciesByFile.put(resolvedArtifactFile, dependency);
+    }
+    return dependency;
+  }
+}
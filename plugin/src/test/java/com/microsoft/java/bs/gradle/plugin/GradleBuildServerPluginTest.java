@@ -6,30 +6,43 @@ package com.microsoft.java.bs.gradle.plugin;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.ArrayList;
 
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
 import com.microsoft.java.bs.gradle.model.GradleSourceSet;
 import com.microsoft.java.bs.gradle.model.GradleSourceSets;
 import com.microsoft.java.bs.gradle.model.GradleSourceSetsMetadata;
 import com.microsoft.java.bs.gradle.model.JavaExtension;
 import com.microsoft.java.bs.gradle.model.ScalaExtension;
 import com.microsoft.java.bs.gradle.model.SupportedLanguages;
+import com.microsoft.java.bs.gradle.model.actions.GetSourceSetsAction;
 import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSets;
 import org.gradle.tooling.GradleConnector;
 import org.gradle.tooling.ModelBuilder;
 import org.gradle.tooling.ProjectConnection;
 import org.gradle.util.GradleVersion;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
@@ -46,12 +59,14 @@ class GradleBuildServerPluginTest {
     ).normalize();
   }
 
-  private GradleSourceSets getGradleSourceSets(ProjectConnection connect) throws IOException {
+  private GradleSourceSets getGradleSourceSets(ProjectConnection connect, String... arguments)
+      throws IOException {
     ModelBuilder<GradleSourceSetsMetadata> modelBuilder =
         connect.model(GradleSourceSetsMetadata.class);
     File initScript = PluginHelper.getInitScript();
     modelBuilder
         .addArguments("--init-script", initScript.getAbsolutePath())
+        .addArguments(arguments)
         .addArguments("-Dorg.gradle.daemon.idletimeout=10")
         .addArguments("-Dorg.gradle.vfs.watch=false")
         .addArguments("-Dorg.gradle.logging.level=quiet")
@@ -571,4 +586,180 @@ class GradleBuildServerPluginTest {
       }
     });
   }
+
+  private GradleSourceSets getIsolatedGradleSourceSets(ProjectConnection connect,
+      File initScript, OutputStream output) {
+    return connect.action(new GetSourceSetsAction(null, true))
+        .addArguments("--init-script", initScript.getAbsolutePath())
+        .addArguments("--configuration-cache")
+        .addArguments("-Dorg.gradle.unsafe.isolated-projects=true")
+        .addArguments("-Dorg.gradle.daemon.idletimeout=10")
+        .addArguments("-Dorg.gradle.vfs.watch=false")
+        .addJvmArguments("-Dbsp.gradle.supportedLanguages="
+            + String.join(",", SupportedLanguages.allBspNames))
+        .setStandardOutput(output)
+        .run();
+  }
+
+  @Test
+  void testSupportedLanguageBuildersAreShared() {
+    String previous = System.getProperty("bsp.gradle.supportedLanguages");
+    try {
+      System.setProperty("bsp.gradle.supportedLanguages", "java,scala,java");
+      List<LanguageModelBuilder> builders = GradleBuildServerPlugin.getSupportedLanguageBuilders();
+      assertEquals(2, builders.size());
+      assertSame(builders, GradleBuildServerPlugin.getSupportedLanguageBuilders());
+      assertThrows(UnsupportedOperationException.class, () -> builders.add(null));
+
+      System.setProperty("bsp.gradle.supportedLanguages", "java");
+      assertEquals(1, GradleBuildServerPlugin.getSupportedLanguageBuilders().size());
+    } finally {
+      if (previous == null) {
+        System.clearProperty("bsp.gradle.supportedLanguages");
+      } else {
+        System.setProperty("bsp.gradle.supportedLanguages", previous);
+      }
+    }
+  }
+
+  @Test
+  void testManyProjects(@TempDir Path tempDir) throws IOException {
+    assumeTrue(getJavaVersion() <= 22);
+    int projectCount = 500;
+    StringBuilder settings = new StringBuilder("rootProject.name = 'many-projects'\n");
+    for (int i = 0; i < projectCount; i++) {
+      String name = "project" + i;
+      Files.createDirectories(tempDir.resolve(name).resolve("src/main/java"));
+      settings.append("include '").append(name).append("'\n");
+    }
+    Files.write(tempDir.resolve("settings.gradle"),
+        settings.toString().getBytes(StandardCharsets.UTF_8));
+    Files.write(tempDir.resolve("build.gradle"),
+        "subprojects { apply plugin: 'java' }\n".getBytes(StandardCharsets.UTF_8));
+
+    withConnection(tempDir.toFile(), GradleVersion.version("8.8"), connect -> {
+      GradleSourceSets gradleSourceSets = getGradleSourceSets(connect);
+      assertEquals(projectCount * 2, gradleSourceSets.getGradleSourceSets().size());
+      for (GradleSourceSet gradleSourceSet : gradleSourceSets.getGradleSourceSets()) {
+        assertEquals(1, gradleSourceSet.getExtensions().size());
+        assertNotNull(SupportedLanguages.JAVA.getExtension(gradleSourceSet));
+        assertEquals(1, gradleSourceSet.getSourceDirs().size());
+      }
+    });
+  }
+
+  @Test
+  void testConfigurationCacheReused() throws IOException {
+    // the lifecycle callbacks used by the init script were added in Gradle 8.8
+    assumeTrue(getJavaVersion() <= 22);
+    File projectDir = projectPath.resolve("junit5-jupiter-starter-gradle").toFile();
+    File initScript = PluginHelper.getInitScript();
+    withConnection(projectDir, GradleVersion.version("8.8"), connect -> {
+      ByteArrayOutputStream firstOutput = new ByteArrayOutputStream();
+      GradleSourceSets first = getIsolatedGradleSourceSets(connect, initScript, firstOutput);
+      assertEquals(2, first.getGradleSourceSets().size());
+
+      ByteArrayOutputStream secondOutput = new ByteArrayOutputStream();
+      GradleSourceSets second = getIsolatedGradleSourceSets(connect, initScript, secondOutput);
+      assertEquals(2, second.getGradleSourceSets().size());
+      assertTrue(secondOutput.toString().contains("Reusing configuration cache."),
+          secondOutput::toString);
+    });
+  }
+
+  @Test
+  void testIsolatedProjectsExcludeProjectOutputs() throws IOException {
+    // the lifecycle callbacks used by the init script were added in Gradle 8.8
+    assumeTrue(getJavaVersion() <= 22);
+    File projectDir = projectPath.resolve("project-dependency-configuration").toFile();
+    File initScript = PluginHelper.getInitScript();
+    withConnection(projectDir, GradleVersion.version("8.8"), connect -> {
+      GradleSourceSets gradleSourceSets = getIsolatedGradleSourceSets(connect, initScript,
+          new ByteArrayOutputStream());
+      assertEquals(4, gradleSourceSets.getGradleSourceSets().size());
+
+      Set<File> outputs = new HashSet<>();
+      for (GradleSourceSet gradleSourceSet : gradleSourceSets.getGradleSourceSets()) {
+        outputs.add(gradleSourceSet.getSourceOutputDir());
+        outputs.add(gradleSourceSet.getResourceOutputDir());
+        outputs.addAll(gradleSourceSet.getArchiveOutputFiles());
+      }
+      boolean hasProjectDependency = false;
+      for (GradleSourceSet gradleSourceSet : gradleSourceSets.getGradleSourceSets()) {
+        if (!gradleSourceSet.getBuildTargetDependencies().isEmpty()) {
+          hasProjectDependency = true;
+        }
+        for (GradleModuleDependency dependency : gradleSourceSet.getModuleDependencies()) {
+          for (Artifact artifact : dependency.getArtifacts()) {
+            if ("file".equals(artifact.getUri().getScheme())) {
+              assertFalse(outputs.contains(new File(artifact.getUri())),
+                  () -> "Project output in module dependencies: " + artifact.getUri());
+            }
+          }
+        }
+      }
+      assertTrue(hasProjectDependency);
+    });
+  }
+
+  @Test
+  void testParallelDependencies() throws IOException {
+    // the concurrent mode needs Gradle 8.0+
+    assumeTrue(getJavaVersion() <= 22);
+    File projectDir = projectPath.resolve("project-dependency-test-fixtures").toFile();
+    withConnection(projectDir, GradleVersion.version("8.8"), connect -> {
+      GradleSourceSets serial = getGradleSourceSets(connect);
+      GradleSourceSets parallel = getGradleSourceSets(connect, "--parallel",
+          "-Dbsp.gradle.parallelDependencies=true");
+      assertEquals(5, parallel.getGradleSourceSets().size());
+      assertEquals(new HashSet<>(serial.getGradleSourceSets()),
+          new HashSet<>(parallel.getGradleSourceSets()));
+    });
+  }
+
+  @Test
+  void testClassifierArtifacts() throws IOException {
+    assumeTrue(getJavaVersion() <= 22);
+    withSourceSets("junit5-jupiter-starter-gradle", GradleVersion.version("8.8"),
+        gradleSourceSets -> {
+          GradleSourceSet testSourceSet = gradleSourceSets.getGradleSourceSets().stream()
+              .filter(sourceSet -> sourceSet.getSourceSetName().equals("test"))
+              .findFirst()
+              .get();
+          GradleModuleDependency jupiterApi = testSourceSet.getModuleDependencies().stream()
+              .filter(dependency -> dependency.getModule().equals("junit-jupiter-api"))
+              .findFirst()
+              .get();
+          Set<String> classifiers = new HashSet<>();
+          for (Artifact artifact : jupiterApi.getArtifacts()) {
+            if (artifact.getClassifier() != null) {
+              classifiers.add(artifact.getClassifier());
+              assertTrue(artifact.getUri().toString()
+                  .endsWith("-" + artifact.getClassifier() + ".jar"));
+            }
+          }
+          assertTrue(classifiers.contains("sources"));
+          assertTrue(classifiers.contains("javadoc"));
+        });
+  }
+
+  @Test
+  void testUnrelatedTasksAreNotConfigured(@TempDir Path tempDir) throws IOException {
+    assumeTrue(getJavaVersion() <= 22);
+    Files.write(tempDir.resolve("settings.gradle"),
+        "rootProject.name = 'lazy-tasks'\n".getBytes(StandardCharsets.UTF_8));
+    String buildScript = "plugins { id 'java' }\n"
+        + "tasks.register('unrelated') {\n"
+        + "  throw new GradleException('unrelated task configured')\n"
+        + "}\n"
+        + "tasks.register('unrelatedJar', Jar) {\n"
+        + "  throw new GradleException('unrelated archive task configured')\n"
+        + "}\n";
+    Files.write(tempDir.resolve("build.gradle"), buildScript.getBytes(StandardCharsets.UTF_8));
+
+    withConnection(tempDir.toFile(), GradleVersion.version("8.8"), connect -> {
+      GradleSourceSets gradleSourceSets = getGradleSourceSets(connect);
+      assertEquals(2, gradleSourceSets.getGradleSourceSets().size());
+    });
+  }
 }
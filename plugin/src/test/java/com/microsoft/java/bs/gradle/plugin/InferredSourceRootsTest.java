@@ -0,0 +1,115 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.gradle.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InferredSourceRootsTest {
+
+  @Test
+  void testReparsesOnlyModifiedDirectories(@TempDir Path tempDir) throws IOException {
+    File root = tempDir.resolve("generated").toFile();
+    File dir = new File(root, "foo/bar");
+    File file = new File(dir, "Foo.java");
+    write(file, "package foo.bar;");
+    long lastModified = 100_000L;
+    dir.setLastModified(lastModified);
+    InferredSourceRoots roots = new InferredSourceRoots(10);
+
+    assertEquals(root.getAbsoluteFile(), getSourceDir(roots, "task", dir, file));
+
+    // the directory is not modified, so the file is not read again.
+    write(file, "package bar;");
+    dir.setLastModified(lastModified);
+    assertEquals(root.getAbsoluteFile(), getSourceDir(roots, "task", dir, file));
+
+    dir.setLastModified(lastModified + 10_000L);
+    assertEquals(new File(root, "foo").getAbsoluteFile(),
+        getSourceDir(roots, "task", dir, file));
+  }
+
+  @Test
+  void testDropsDirectoriesNotSeen(@TempDir Path tempDir) throws IOException {
+    File root = tempDir.resolve("generated").toFile();
+    File dir = new File(root, "foo");
+    File file = new File(dir, "Foo.java");
+    write(file, "package foo;");
+    long lastModified = 100_000L;
+    dir.setLastModified(lastModified);
+    InferredSourceRoots roots = new InferredSourceRoots(10);
+    assertEquals(root.getAbsoluteFile(), getSourceDir(roots, "task", dir, file));
+
+    // a scan which does not look up the directory forgets it, so the deleted file can no
+    // longer be resolved from the cache.
+    roots.scan("task").finish();
+    Files.delete(file.toPath());
+    dir.setLastModified(lastModified);
+    assertNull(getSourceDir(roots, "task", dir, file));
+  }
+
+  @Test
+  void testFallsBackToTheNextFile(@TempDir Path tempDir) throws IOException {
+    File root = tempDir.resolve("generated").toFile();
+    File dir = new File(root, "foo");
+    File moduleInfo = new File(dir, "module-info.java");
+    File file = new File(dir, "Foo.java");
+    write(moduleInfo, "module foo {}");
+    write(file, "package foo;");
+    InferredSourceRoots roots = new InferredSourceRoots(10);
+
+    assertEquals(root.getAbsoluteFile(), getSourceDir(roots, "task", dir, moduleInfo, file));
+  }
+
+  @Test
+  void testDoesNotCacheDirectoriesWithoutRoot(@TempDir Path tempDir) throws IOException {
+    File root = tempDir.resolve("generated").toFile();
+    File dir = new File(root, "foo");
+    File file = new File(dir, "Foo.java");
+    write(file, "class Foo {}");
+    long lastModified = 100_000L;
+    dir.setLastModified(lastModified);
+    InferredSourceRoots roots = new InferredSourceRoots(10);
+    assertNull(getSourceDir(roots, "task", dir, file));
+
+    // editing the file does not modify the directory.
+    write(file, "package foo;");
+    dir.setLastModified(lastModified);
+    assertEquals(root.getAbsoluteFile(), getSourceDir(roots, "task", dir, file));
+  }
+
+  @Test
+  void testDropsLeastRecentlyScannedTasks() {
+    InferredSourceRoots roots = new InferredSourceRoots(2);
+    roots.scan("first").finish();
+    roots.scan("second").finish();
+    roots.scan("first").finish();
+    roots.scan("third").finish();
+
+    assertEquals(2, roots.size());
+  }
+
+  private static File getSourceDir(InferredSourceRoots roots, String taskKey, File dir,
+      File... files) {
+    InferredSourceRoots.Scan scan = roots.scan(taskKey);
+    File sourceDir = scan.getSourceDir(dir, Arrays.asList(files));
+    scan.finish();
+    return sourceDir;
+  }
+
+  private static void write(File file, String content) throws IOException {
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
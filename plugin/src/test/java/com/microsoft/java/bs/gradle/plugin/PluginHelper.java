@@ -27,8 +27,15 @@ public class PluginHelper {
         + "    classpath files('%s')\n"
         + "  }\n"
         + "}\n"
-        + "allprojects {\n"
-        + "  apply plugin: com.microsoft.java.bs.gradle.plugin.GradleBuildServerPlugin\n"
+        + "if (org.gradle.util.GradleVersion.current()"
+        + " >= org.gradle.util.GradleVersion.version('8.8')) {\n"
+        + "  gradle.lifecycle.beforeProject {\n"
+        + "    it.apply plugin: com.microsoft.java.bs.gradle.plugin.GradleBuildServerPlugin\n"
+        + "  }\n"
+        + "} else {\n"
+        + "  allprojects {\n"
+        + "    apply plugin: com.microsoft.java.bs.gradle.plugin.GradleBuildServerPlugin\n"
+        + "  }\n"
         + "}\n";
     initScriptContent = String.format(initScriptContent, pluginJarUnixPath);
 
@@ -0,0 +1,151 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+import com.microsoft.java.bs.gradle.model.GradleSourceSets;
+
+/**
+ * Hashes of the files which decide the shape of a Gradle build, keyed by absolute path.
+ * An empty hash means the file did not exist.
+ */
+public class BuildFileFingerprints {
+  private BuildFileFingerprints() {}
+
+  /**
+   * Files which decide the shape of a whole build, relative to its root directory.
+   */
+  private static final String[] ROOT_BUILD_FILES = {
+    "settings.gradle",
+    "settings.gradle.kts",
+    "gradle.properties",
+    "gradle/libs.versions.toml",
+    "gradle/wrapper/gradle-wrapper.properties",
+    "buildSrc/build.gradle",
+    "buildSrc/build.gradle.kts"
+  };
+
+  /**
+   * Files which decide the shape of a project, relative to its project directory.
+   */
+  private static final String[] PROJECT_BUILD_FILES = {
+    "build.gradle",
+    "build.gradle.kts",
+    "gradle.properties"
+  };
+
+  /**
+   * Compute the fingerprints of the build files of the given source sets.
+   */
+  public static Map<String, String> of(GradleSourceSets sourceSets) {
+    Map<String, String> fingerprints = new TreeMap<>();
+    if (sourceSets == null) {
+      return fingerprints;
+    }
+    for (GradleSourceSet sourceSet : sourceSets.getGradleSourceSets()) {
+      addFingerprints(fingerprints, sourceSet.getRootDir(), ROOT_BUILD_FILES);
+      addFingerprints(fingerprints, sourceSet.getProjectDir(), PROJECT_BUILD_FILES);
+    }
+    return fingerprints;
+  }
+
+  /**
+   * Check whether all the files still have the recorded content.
+   */
+  public static boolean isUpToDate(Map<String, String> fingerprints) {
+    for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+      String hash = hash(new File(entry.getKey()));
+      if (hash == null || !hash.equals(entry.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Find the projects whose build files changed since the fingerprints were taken.
+   *
+   * @return the directories of the changed projects, or {@code null} if a file that
+   *     affects the whole build has changed.
+   */
+  public static Set<File> getChangedProjectDirs(Map<String, String> fingerprints,
+      GradleSourceSets sourceSets) {
+    Set<File> checkedRootDirs = new HashSet<>();
+    Set<File> checkedProjectDirs = new HashSet<>();
+    Set<File> changedProjectDirs = new HashSet<>();
+    for (GradleSourceSet sourceSet : sourceSets.getGradleSourceSets()) {
+      File rootDir = sourceSet.getRootDir();
+      if (rootDir != null && checkedRootDirs.add(rootDir)
+          && hasChanged(fingerprints, rootDir, ROOT_BUILD_FILES)) {
+        return null;
+      }
+      File projectDir = sourceSet.getProjectDir();
+      if (projectDir == null || !checkedProjectDirs.add(projectDir)) {
+        continue;
+      }
+      if (hasChanged(fingerprints, projectDir, PROJECT_BUILD_FILES)) {
+        // the root project can configure all the other projects.
+        if (projectDir.equals(rootDir)) {
+          return null;
+        }
+        changedProjectDirs.add(projectDir);
+      }
+    }
+    return changedProjectDirs;
+  }
+
+  private static boolean hasChanged(Map<String, String> fingerprints, File dir,
+      String[] fileNames) {
+    for (String fileName : fileNames) {
+      File file = new File(dir, fileName);
+      String fingerprint = fingerprints.get(file.getAbsolutePath());
+      String hash = hash(file);
+      if (fingerprint == null || hash == null || !hash.equals(fingerprint)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void addFingerprints(Map<String, String> fingerprints, File dir,
+      String[] fileNames) {
+    if (dir == null) {
+      return;
+    }
+    for (String fileName : fileNames) {
+      File file = new File(dir, fileName);
+      String path = file.getAbsolutePath();
+      if (!fingerprints.containsKey(path)) {
+        fingerprints.put(path, hash(file));
+      }
+    }
+  }
+
+  /**
+   * Return the SHA-256 of the file content, an empty string if the file does not exist,
+   * or {@code null} if it cannot be read.
+   */
+  static String hash(File file) {
+    if (!file.isFile()) {
+      return "";
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(file.toPath())));
+    } catch (IOException | NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,245 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.gradle;
+
+import static com.microsoft.java.bs.core.Launcher.LOGGER;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Watch the build files of the workspace and run a callback once a burst of changes,
+ * e.g. a git checkout, has settled.
+ */
+public class BuildFileWatcher {
+
+  private static final long DEFAULT_DEBOUNCE_MILLIS = 1000;
+
+  private final Runnable onChange;
+
+  private final long debounceMillis;
+
+  private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+
+  /**
+   * The watched files and their missing ancestors, e.g. the {@code gradle} directory
+   * before the version catalog is created.
+   */
+  private volatile Set<Path> relevantPaths = new HashSet<>();
+
+  private Collection<String> watchedFiles = new HashSet<>();
+
+  private WatchService watchService;
+
+  private ScheduledExecutorService scheduler;
+
+  private ScheduledFuture<?> pendingChange;
+
+  private boolean closed;
+
+  public BuildFileWatcher(Runnable onChange) {
+    this(onChange, DEFAULT_DEBOUNCE_MILLIS);
+  }
+
+  BuildFileWatcher(Runnable onChange, long debounceMillis) {
+    this.onChange = onChange;
+    this.debounceMillis = debounceMillis;
+  }
+
+  /**
+   * Replace the watched files with the given absolute paths.
+   */
+  public synchronized void watch(Collection<String> files) {
+    if (closed || Boolean.getBoolean("bsp.plugin.filewatcher.disabled")) {
+      return;
+    }
+    if (watchService == null && !start()) {
+      return;
+    }
+    watchedFiles = new ArrayList<>(files);
+    register();
+  }
+
+  /**
+   * Watch the nearest existing ancestor of each watched file, and stop watching the
+   * directories which are no longer needed.
+   */
+  private synchronized void register() {
+    Set<Path> paths = new HashSet<>();
+    Set<Path> dirs = new HashSet<>();
+    for (String file : watchedFiles) {
+      Path path = Paths.get(file);
+      while (path.getParent() != null) {
+        paths.add(path);
+        path = path.getParent();
+        if (Files.isDirectory(path)) {
+          dirs.add(path);
+          break;
+        }
+      }
+    }
+
+    Iterator<Map.Entry<Path, WatchKey>> iterator = watchKeys.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Path, WatchKey> entry = iterator.next();
+      if (!dirs.contains(entry.getKey())) {
+        entry.getValue().cancel();
+        iterator.remove();
+      }
+    }
+    for (Path dir : dirs) {
+      if (watchKeys.containsKey(dir)) {
+        continue;
+      }
+      try {
+        watchKeys.put(dir, dir.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY));
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Failed to watch the directory: " + dir, e);
+      }
+    }
+    relevantPaths = paths;
+  }
+
+  /**
+   * Stop watching and drop any pending change.
+   */
+  public synchronized void close() {
+    closed = true;
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Failed to close the build file watcher.", e);
+      }
+    }
+  }
+
+  private boolean start() {
+    try {
+      watchService = FileSystems.getDefault().newWatchService();
+    } catch (IOException | UnsupportedOperationException e) {
+      LOGGER.log(Level.WARNING, "Failed to create the build file watcher.", e);
+      closed = true;
+      return false;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "Build File Change Handler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    Thread watcherThread = new Thread(this::processEvents, "Build File Watcher");
+    watcherThread.setDaemon(true);
+    watcherThread.start();
+    return true;
+  }
+
+  /**
+   * Wait for file events until the watch service is closed.
+   */
+  private void processEvents() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        List<WatchEvent<?>> events = key.pollEvents();
+        key.reset();
+        if (handleEvents((Path) key.watchable(), events)) {
+          scheduleChange();
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // the watcher is closed.
+    }
+  }
+
+  /**
+   * Return whether the events of the directory touch a watched file. A created ancestor
+   * of a watched file is watched right away, so that the file is seen once it is created
+   * even though the sync triggered by the directory finds no change.
+   */
+  synchronized boolean handleEvents(Path dir, List<WatchEvent<?>> events) {
+    boolean changed = false;
+    boolean createdAncestor = false;
+    for (WatchEvent<?> event : events) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        changed = true;
+        continue;
+      }
+      Path path = dir.resolve((Path) event.context());
+      if (relevantPaths.contains(path)) {
+        changed = true;
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+          createdAncestor = true;
+        }
+      }
+    }
+    if (createdAncestor && !closed) {
+      register();
+    }
+    return changed;
+  }
+
+  /**
+   * Whether the directory is currently watched.
+   */
+  synchronized boolean isWatching(Path dir) {
+    return watchKeys.containsKey(dir);
+  }
+
+  /**
+   * Wait for the pending callback, if any, to complete.
+   */
+  void awaitPendingChange() throws InterruptedException, ExecutionException {
+    ScheduledFuture<?> change;
+    synchronized (this) {
+      change = pendingChange;
+    }
+    if (change != null) {
+      change.get();
+    }
+  }
+
+  synchronized void scheduleChange() {
+    if (closed) {
+      return;
+    }
+    if (pendingChange != null) {
+      pendingChange.cancel(false);
+    }
+    pendingChange = scheduler.schedule(() -> {
+      try {
+        onChange.run();
+      } catch (Exception e) {
+        LOGGER.log(Level.WARNING, "Failed to handle the build file change.", e);
+      }
+    }, debounceMillis, TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,101 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.gradle;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+
+/**
+ * A cheap file system check whether a build created or removed generated source roots,
+ * e.g. the output of an annotation processor or a protobuf task, without asking Gradle.
+ */
+public class GeneratedSourcesProbe {
+  private GeneratedSourcesProbe() {}
+
+  /**
+   * Code generators put their source roots a few levels below the {@code generated}
+   * directory, e.g. {@code generated/sources/annotationProcessor/java/main}. Deeper
+   * directories are packages, which come and go without changing the build targets.
+   */
+  private static final int MAX_DEPTH = 4;
+
+  /**
+   * Return the generated source roots, and the directories which may hold them, that
+   * currently contain files.
+   */
+  public static Set<File> scan(Collection<GradleSourceSet> sourceSets) {
+    Set<File> roots = new HashSet<>();
+    Set<File> visitedDirs = new HashSet<>();
+    for (GradleSourceSet sourceSet : sourceSets) {
+      for (File generatedSourceDir : sourceSet.getGeneratedSourceDirs()) {
+        if (hasFiles(generatedSourceDir)) {
+          roots.add(generatedSourceDir);
+        }
+      }
+      File generatedDir = getGeneratedDir(sourceSet);
+      if (generatedDir != null && visitedDirs.add(generatedDir)) {
+        collectNonEmptyDirs(generatedDir, 0, roots);
+      }
+    }
+    return roots;
+  }
+
+  /**
+   * Return the {@code generated} directory of the build directory of the project, which
+   * is the top level directory of the project that contains the class output.
+   */
+  private static File getGeneratedDir(GradleSourceSet sourceSet) {
+    File projectDir = sourceSet.getProjectDir();
+    File outputDir = sourceSet.getSourceOutputDir();
+    if (projectDir == null || outputDir == null) {
+      return null;
+    }
+    Path projectPath = projectDir.toPath();
+    Path outputPath = outputDir.toPath();
+    if (!outputPath.startsWith(projectPath) || outputPath.equals(projectPath)) {
+      return null;
+    }
+    Path buildDir = projectPath.resolve(projectPath.relativize(outputPath).getName(0));
+    return buildDir.resolve("generated").toFile();
+  }
+
+  private static boolean collectNonEmptyDirs(File dir, int depth, Set<File> dirs) {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return false;
+    }
+    boolean hasFiles = false;
+    for (File child : children) {
+      if (!child.isDirectory()) {
+        hasFiles = true;
+      } else if (depth < MAX_DEPTH) {
+        hasFiles |= collectNonEmptyDirs(child, depth + 1, dirs);
+      } else {
+        hasFiles |= hasFiles(child);
+      }
+    }
+    if (hasFiles) {
+      dirs.add(dir);
+    }
+    return hasFiles;
+  }
+
+  private static boolean hasFiles(File dir) {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return false;
+    }
+    for (File child : children) {
+      if (!child.isDirectory() || hasFiles(child)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
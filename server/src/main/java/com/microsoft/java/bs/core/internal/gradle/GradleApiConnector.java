@@ -9,17 +9,24 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleClassifierArtifacts;
 import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSets;
+import org.gradle.tooling.BuildAction;
 import org.gradle.tooling.BuildActionExecuter;
+import org.gradle.tooling.BuildCancelledException;
 import org.gradle.tooling.BuildException;
 import org.gradle.tooling.BuildLauncher;
+import org.gradle.tooling.CancellationToken;
 import org.gradle.tooling.GradleConnectionException;
 import org.gradle.tooling.GradleConnector;
 import org.gradle.tooling.ProjectConnection;
@@ -33,7 +40,9 @@ import com.microsoft.java.bs.core.internal.reporter.CompileProgressReporter;
 import com.microsoft.java.bs.core.internal.reporter.DefaultProgressReporter;
 import com.microsoft.java.bs.core.internal.reporter.ProgressReporter;
 import com.microsoft.java.bs.core.internal.reporter.TestReportReporter;
+import com.microsoft.java.bs.gradle.model.GradleClassifierArtifacts;
 import com.microsoft.java.bs.gradle.model.GradleSourceSets;
+import com.microsoft.java.bs.gradle.model.actions.GetClassifierArtifactsAction;
 import com.microsoft.java.bs.gradle.model.actions.GetSourceSetsAction;
 
 import ch.epfl.scala.bsp4j.BuildClient;
@@ -79,6 +88,74 @@ public class GradleApiConnector {
    * @return an instance of {@link GradleSourceSets}
    */
   public GradleSourceSets getGradleSourceSets(URI projectUri, BuildClient client) {
+    return getGradleSourceSets(projectUri, null, client);
+  }
+
+  /**
+   * Get the source sets of the given projects in the Gradle build.
+   *
+   * @param projectUri  uri of the project
+   * @param projectDirs directories of the projects to fetch, {@code null} to fetch all
+   * @param client      connection to BSP client
+   * @return an instance of {@link GradleSourceSets}
+   */
+  public GradleSourceSets getGradleSourceSets(URI projectUri, Set<File> projectDirs,
+      BuildClient client) {
+    return getGradleSourceSets(projectUri, projectDirs, client, null);
+  }
+
+  /**
+   * Get the source sets of the given projects in the Gradle build.
+   *
+   * @param projectUri  uri of the project
+   * @param projectDirs directories of the projects to fetch, {@code null} to fetch all
+   * @param client      connection to BSP client
+   * @param token       token to cancel the sync, may be {@code null}
+   * @return an instance of {@link GradleSourceSets}
+   * @throws CancellationException if the sync was cancelled through the token
+   */
+  public GradleSourceSets getGradleSourceSets(URI projectUri, Set<File> projectDirs,
+      BuildClient client, CancellationToken token) {
+    List<String> arguments = new ArrayList<>();
+    if (Boolean.getBoolean("bsp.plugin.lazyclassifiers.enabled")) {
+      // a build argument rather than a jvm argument, so that the same daemon is used
+      // when the classifier artifacts are resolved later.
+      arguments.add("-Dbsp.gradle.skipClassifierArtifacts=true");
+    }
+    if (Boolean.getBoolean("bsp.plugin.paralleldependencies.enabled")) {
+      // the projects only get their own locks in a parallel build.
+      arguments.add("--parallel");
+      arguments.add("-Dbsp.gradle.parallelDependencies=true");
+    }
+    if (Boolean.getBoolean("bsp.plugin.configurationcache.enabled")) {
+      arguments.add("--configuration-cache");
+    }
+    boolean isolatedProjects = Boolean.getBoolean("bsp.plugin.isolatedprojects.enabled");
+    if (isolatedProjects) {
+      arguments.add("-Dorg.gradle.unsafe.isolated-projects=true");
+    }
+    // since the model returned from Gradle TAPI is a wrapped object, here we re-construct it
+    // via a copy constructor and return as a POJO.
+    return new DefaultGradleSourceSets(runBuildAction(projectUri,
+        new GetSourceSetsAction(projectDirs, isolatedProjects), client, token, arguments));
+  }
+
+  /**
+   * Resolve the sources and javadoc jars of the external modules of the given projects.
+   *
+   * @param projectUri  uri of the project
+   * @param projectDirs directories of the projects to resolve
+   * @param client      connection to BSP client
+   * @return an instance of {@link GradleClassifierArtifacts}
+   */
+  public GradleClassifierArtifacts getClassifierArtifacts(URI projectUri, Set<File> projectDirs,
+      BuildClient client) {
+    return new DefaultGradleClassifierArtifacts(runBuildAction(projectUri,
+        new GetClassifierArtifactsAction(projectDirs), client, null, Collections.emptyList()));
+  }
+
+  private <T> T runBuildAction(URI projectUri, BuildAction<T> action, BuildClient client,
+      CancellationToken token, List<String> arguments) {
     File initScript = Utils.getInitScriptFile();
     if (!initScript.exists()) {
       throw new IllegalStateException("Failed to get init script file.");
@@ -87,9 +164,8 @@ public class GradleApiConnector {
     ByteArrayOutputStream errorOut = new ByteArrayOutputStream();
     try (ProjectConnection connection = getGradleConnector(projectUri).connect();
          errorOut) {
-      BuildActionExecuter<GradleSourceSets> buildExecutor =
-          Utils.getBuildActionExecuter(connection, preferenceManager.getPreferences(),
-            new GetSourceSetsAction());
+      BuildActionExecuter<T> buildExecutor =
+          Utils.getBuildActionExecuter(connection, preferenceManager.getPreferences(), action);
       buildExecutor.addProgressListener(reporter,
               OperationType.FILE_DOWNLOAD, OperationType.PROJECT_CONFIGURATION)
           .setStandardError(errorOut)
@@ -100,9 +176,13 @@ public class GradleApiConnector {
       }
       buildExecutor.addJvmArguments("-Dbsp.gradle.supportedLanguages="
           + String.join(",", preferenceManager.getClientSupportedLanguages()));
-      // since the model returned from Gradle TAPI is a wrapped object, here we re-construct it
-      // via a copy constructor and return as a POJO.
-      return new DefaultGradleSourceSets(buildExecutor.run());
+      buildExecutor.addArguments(arguments);
+      if (token != null) {
+        buildExecutor.withCancellationToken(token);
+      }
+      return buildExecutor.run();
+    } catch (BuildCancelledException e) {
+      throw new CancellationException("The sync of the Gradle build was cancelled.");
     } catch (GradleConnectionException | IllegalStateException | IOException e) {
       String summary = e.getMessage();
       if (errorOut.size() > 0) {
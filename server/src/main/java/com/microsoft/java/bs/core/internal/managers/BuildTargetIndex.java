@@ -0,0 +1,125 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.managers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.microsoft.java.bs.core.internal.model.GradleBuildTarget;
+import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+
+import ch.epfl.scala.bsp4j.BuildTargetIdentifier;
+
+/**
+ * The stored build targets together with the lookups derived from them. An index is never
+ * modified after it is built, {@link BuildTargetManager} replaces it as a whole on every
+ * store, so readers always see the targets and their lookups from the same store.
+ */
+class BuildTargetIndex {
+
+  static final BuildTargetIndex EMPTY = new BuildTargetIndex(Collections.emptyMap());
+
+  private final Map<BuildTargetIdentifier, GradleBuildTarget> targets;
+
+  private final Map<String, Set<BuildTargetIdentifier>> taskPathToTargets;
+
+  private final Map<File, List<GradleBuildTarget>> projectDirToTargets;
+
+  private final SourceRootTrie sourceRoots;
+
+  private final Map<File, GradleBuildTarget> outputToTarget;
+
+  BuildTargetIndex(Map<BuildTargetIdentifier, GradleBuildTarget> targets) {
+    Map<String, Set<BuildTargetIdentifier>> taskPaths = new HashMap<>();
+    Map<File, List<GradleBuildTarget>> projectDirs = new HashMap<>();
+    SourceRootTrie sourceRoots = new SourceRootTrie();
+    Map<File, GradleBuildTarget> outputs = new HashMap<>();
+    for (Map.Entry<BuildTargetIdentifier, GradleBuildTarget> entry : targets.entrySet()) {
+      GradleBuildTarget target = entry.getValue();
+      GradleSourceSet sourceSet = target.getSourceSet();
+      if (sourceSet.getTaskNames() != null) {
+        for (String taskName : sourceSet.getTaskNames()) {
+          taskPaths.computeIfAbsent(taskName, k -> new HashSet<>()).add(entry.getKey());
+        }
+      }
+      projectDirs.computeIfAbsent(sourceSet.getProjectDir().getAbsoluteFile(),
+          k -> new ArrayList<>(2))
+          .add(target);
+      addAll(sourceRoots, sourceSet.getSourceDirs(), target);
+      addAll(sourceRoots, sourceSet.getGeneratedSourceDirs(), target);
+      addAll(sourceRoots, sourceSet.getResourceDirs(), target);
+      put(outputs, sourceSet.getSourceOutputDir(), target);
+      put(outputs, sourceSet.getResourceOutputDir(), target);
+      putAll(outputs, sourceSet.getArchiveOutputFiles(), target);
+    }
+    for (Map.Entry<String, Set<BuildTargetIdentifier>> entry : taskPaths.entrySet()) {
+      entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+    }
+    for (Map.Entry<File, List<GradleBuildTarget>> entry : projectDirs.entrySet()) {
+      entry.setValue(Collections.unmodifiableList(entry.getValue()));
+    }
+    this.targets = Collections.unmodifiableMap(targets);
+    this.taskPathToTargets = Collections.unmodifiableMap(taskPaths);
+    this.projectDirToTargets = Collections.unmodifiableMap(projectDirs);
+    this.sourceRoots = sourceRoots;
+    this.outputToTarget = Collections.unmodifiableMap(outputs);
+  }
+
+  private static void put(Map<File, GradleBuildTarget> map, File file,
+      GradleBuildTarget target) {
+    if (file != null) {
+      map.put(file, target);
+    }
+  }
+
+  private static void putAll(Map<File, GradleBuildTarget> map, Collection<File> files,
+      GradleBuildTarget target) {
+    if (files != null) {
+      for (File file : files) {
+        map.put(file, target);
+      }
+    }
+  }
+
+  private static void addAll(SourceRootTrie sourceRoots, Collection<File> files,
+      GradleBuildTarget target) {
+    if (files != null) {
+      for (File file : files) {
+        sourceRoots.add(file, target);
+      }
+    }
+  }
+
+  Map<BuildTargetIdentifier, GradleBuildTarget> getTargets() {
+    return targets;
+  }
+
+  Map<String, Set<BuildTargetIdentifier>> getTaskPathToTargets() {
+    return taskPathToTargets;
+  }
+
+  List<GradleBuildTarget> getTargetsOfProject(File projectDir) {
+    return projectDirToTargets.getOrDefault(projectDir.getAbsoluteFile(),
+        Collections.emptyList());
+  }
+
+  List<GradleBuildTarget> getTargetsOfSourceRoot(File sourceRoot) {
+    return sourceRoots.get(sourceRoot);
+  }
+
+  Set<GradleBuildTarget> getTargetsContaining(File file) {
+    return sourceRoots.findContaining(file);
+  }
+
+  GradleBuildTarget getTargetOfOutput(File output) {
+    return outputToTarget.get(output);
+  }
+}
@@ -3,11 +3,15 @@
 
 package com.microsoft.java.bs.core.internal.managers;
 
+import java.io.File;
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -19,15 +23,23 @@ import ch.epfl.scala.bsp4j.JvmBuildTarget;
 import ch.epfl.scala.bsp4j.ScalaBuildTarget;
 import ch.epfl.scala.bsp4j.ScalaPlatform;
 import com.microsoft.java.bs.core.internal.model.GradleBuildTarget;
+import com.microsoft.java.bs.gradle.model.Artifact;
 import com.microsoft.java.bs.gradle.model.BuildTargetDependency;
+import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
 import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+import com.microsoft.java.bs.gradle.model.GradleSourceSetFingerprint;
 import com.microsoft.java.bs.gradle.model.GradleSourceSets;
 import com.microsoft.java.bs.gradle.model.JavaExtension;
 import com.microsoft.java.bs.gradle.model.ScalaExtension;
 import com.microsoft.java.bs.gradle.model.SupportedLanguages;
+import com.microsoft.java.bs.gradle.model.impl.DefaultBuildTargetDependency;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSet;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSets;
 
 import ch.epfl.scala.bsp4j.BuildTarget;
 import ch.epfl.scala.bsp4j.BuildTargetCapabilities;
+import ch.epfl.scala.bsp4j.BuildTargetEvent;
+import ch.epfl.scala.bsp4j.BuildTargetEventKind;
 import ch.epfl.scala.bsp4j.BuildTargetIdentifier;
 import ch.epfl.scala.bsp4j.BuildTargetTag;
 import ch.epfl.scala.bsp4j.extended.JvmBuildTargetEx;
@@ -37,68 +49,348 @@ import ch.epfl.scala.bsp4j.extended.JvmBuildTargetEx;
  */
 public class BuildTargetManager {
 
-  private volatile Map<BuildTargetIdentifier, GradleBuildTarget> cache;
+  private volatile BuildTargetIndex index;
 
   public BuildTargetManager() {
-    this.cache = new HashMap<>();
+    this.index = BuildTargetIndex.EMPTY;
   }
 
   /**
-   * Store the Gradle source sets.
+   * Store the Gradle source sets. The build targets of the unchanged source sets are
+   * carried over from the previous store.
    *
-   * @return A list containing identifiers of changed build targets.
+   * @return the created, changed and deleted build targets. The first store returns
+   *     no events, the client gets the initial targets from {@code workspace/buildTargets}.
    */
-  public List<BuildTargetIdentifier> store(GradleSourceSets gradleSourceSets) {
+  public List<BuildTargetEvent> store(GradleSourceSets gradleSourceSets) {
+    Map<BuildTargetIdentifier, GradleBuildTarget> oldCache = index.getTargets();
     Map<BuildTargetIdentifier, GradleBuildTarget> newCache = new HashMap<>();
-    Map<String, BuildTargetIdentifier> projectPathToBuildTargetId = new HashMap<>();
-    List<BuildTargetIdentifier> changedTargets = new LinkedList<>();
+    List<BuildTargetEvent> events = new LinkedList<>();
     for (GradleSourceSet sourceSet : gradleSourceSets.getGradleSourceSets()) {
       String sourceSetName = sourceSet.getSourceSetName();
       URI uri = getBuildTargetUri(sourceSet.getProjectDir().toURI(), sourceSetName);
-      List<String> tags = getBuildTargetTags(sourceSet.hasTests());
       BuildTargetIdentifier btId = new BuildTargetIdentifier(uri.toString());
-      List<String> languages = new LinkedList<>(sourceSet.getExtensions().keySet());
-      BuildTargetCapabilities buildTargetCapabilities = new BuildTargetCapabilities();
-      buildTargetCapabilities.setCanCompile(true);
-      buildTargetCapabilities.setCanTest(true);
-      BuildTarget bt = new BuildTarget(
-          btId,
-          tags,
-          languages,
-          Collections.emptyList(),
-          buildTargetCapabilities
-      );
-      bt.setBaseDirectory(sourceSet.getRootDir().toURI().toString());
-      bt.setDisplayName(sourceSet.getDisplayName());
+      GradleBuildTarget existingTarget = oldCache.get(btId);
+      GradleBuildTarget buildTarget;
+      if (existingTarget != null && isUnchanged(existingTarget.getSourceSet(), sourceSet)) {
+        buildTarget = existingTarget;
+      } else {
+        events.add(createEvent(btId, existingTarget == null ? BuildTargetEventKind.CREATED
+            : BuildTargetEventKind.CHANGED));
+        buildTarget = createBuildTarget(btId, sourceSet, existingTarget);
+      }
+      newCache.put(btId, buildTarget);
+    }
+    for (BuildTargetIdentifier btId : oldCache.keySet()) {
+      if (!newCache.containsKey(btId)) {
+        events.add(createEvent(btId, BuildTargetEventKind.DELETED));
+      }
+    }
+    BuildTargetIndex newIndex = new BuildTargetIndex(newCache);
+    if (updateBuildTargetDependencies(newCache, oldCache, newIndex, events)) {
+      // the index still refers to the replaced build targets.
+      newIndex = new BuildTargetIndex(newCache);
+    }
+    this.index = newIndex;
+    if (oldCache.isEmpty()) {
+      return new LinkedList<>();
+    }
+    return events;
+  }
+
+  private static BuildTargetEvent createEvent(BuildTargetIdentifier btId,
+      BuildTargetEventKind kind) {
+    BuildTargetEvent event = new BuildTargetEvent(btId);
+    event.setKind(kind);
+    return event;
+  }
+
+  /**
+   * Compare the fingerprints computed by the plugin, only falling back to comparing
+   * the whole source sets when either of them has no fingerprint.
+   */
+  private static boolean isUnchanged(GradleSourceSet existing, GradleSourceSet sourceSet) {
+    GradleSourceSetFingerprint existingFingerprint = existing.getFingerprint();
+    GradleSourceSetFingerprint fingerprint = sourceSet.getFingerprint();
+    if (existingFingerprint != null && fingerprint != null) {
+      return existingFingerprint.equals(fingerprint);
+    }
+    return Objects.equals(existing, sourceSet);
+  }
 
+  private static boolean hasSameExtensions(GradleSourceSet existing, GradleSourceSet sourceSet) {
+    GradleSourceSetFingerprint existingFingerprint = existing.getFingerprint();
+    GradleSourceSetFingerprint fingerprint = sourceSet.getFingerprint();
+    if (existingFingerprint != null && fingerprint != null) {
+      return Objects.equals(existingFingerprint.getExtensions(), fingerprint.getExtensions());
+    }
+    return Objects.equals(existing.getExtensions(), sourceSet.getExtensions());
+  }
+
+  /**
+   * Convert the source set to a build target, reusing the parts of the previous build
+   * target of the source set which did not change.
+   */
+  private GradleBuildTarget createBuildTarget(BuildTargetIdentifier btId,
+      GradleSourceSet sourceSet, GradleBuildTarget existingTarget) {
+    List<String> tags = getBuildTargetTags(sourceSet.hasTests());
+    List<String> languages = new LinkedList<>(sourceSet.getExtensions().keySet());
+    BuildTargetCapabilities buildTargetCapabilities = new BuildTargetCapabilities();
+    buildTargetCapabilities.setCanCompile(true);
+    buildTargetCapabilities.setCanTest(true);
+    BuildTarget bt = new BuildTarget(
+        btId,
+        tags,
+        languages,
+        Collections.emptyList(),
+        buildTargetCapabilities
+    );
+    bt.setDisplayName(sourceSet.getDisplayName());
+
+    if (existingTarget != null) {
+      GradleSourceSet existingSourceSet = existingTarget.getSourceSet();
+      BuildTarget existingBt = existingTarget.getBuildTarget();
+      if (Objects.equals(existingSourceSet.getRootDir(), sourceSet.getRootDir())) {
+        bt.setBaseDirectory(existingBt.getBaseDirectory());
+      }
+      if (hasSameExtensions(existingSourceSet, sourceSet)
+          && Objects.equals(existingSourceSet.getGradleVersion(), sourceSet.getGradleVersion())) {
+        // the jvm and scala data only depend on the extensions and the Gradle version.
+        bt.setDataKind(existingBt.getDataKind());
+        bt.setData(existingBt.getData());
+      }
+    }
+    if (bt.getBaseDirectory() == null) {
+      bt.setBaseDirectory(sourceSet.getRootDir().toURI().toString());
+    }
+    if (bt.getData() == null) {
       setBuildTarget(sourceSet, bt);
+    }
+    return new GradleBuildTarget(bt, sourceSet);
+  }
 
-      GradleBuildTarget buildTarget = new GradleBuildTarget(bt, sourceSet);
-      GradleBuildTarget existingTarget = cache.get(btId);
-      // only compare the source set instance, which is the result
-      // returned from the gradle plugin.
-      if (existingTarget != null
-          && !Objects.equals(existingTarget.getSourceSet(), buildTarget.getSourceSet())) {
-        changedTargets.add(btId);
+  /**
+   * Store the Gradle source sets of the given projects and keep the cached source
+   * sets of all the other projects.
+   *
+   * @param projectSourceSets the source sets fetched for the given projects.
+   * @param projectDirs the directories of the fetched projects.
+   * @return the created, changed and deleted build targets.
+   */
+  public List<BuildTargetEvent> store(GradleSourceSets projectSourceSets,
+      Set<File> projectDirs) {
+    BuildTargetIndex currentIndex = index;
+    List<GradleSourceSet> sourceSets = new ArrayList<>();
+    for (GradleBuildTarget buildTarget : currentIndex.getTargets().values()) {
+      if (!projectDirs.contains(buildTarget.getSourceSet().getProjectDir())) {
+        sourceSets.add(buildTarget.getSourceSet());
       }
-      newCache.put(btId, buildTarget);
-      // Store the relationship between the project dir and the build target id.
-      // 'test' and other source sets are ignored.
-      if ("main".equals(sourceSet.getSourceSetName())) {
-        projectPathToBuildTargetId.put(sourceSet.getProjectDir().getAbsolutePath(), btId);
+    }
+    List<DefaultGradleSourceSet> fetchedSourceSets = new ArrayList<>();
+    for (GradleSourceSet sourceSet : projectSourceSets.getGradleSourceSets()) {
+      fetchedSourceSets.add(sourceSet instanceof DefaultGradleSourceSet
+          ? (DefaultGradleSourceSet) sourceSet : new DefaultGradleSourceSet(sourceSet));
+    }
+    sourceSets.addAll(fetchedSourceSets);
+
+    // the fetched projects only know about their own outputs, so resolve their
+    // dependencies on the other projects here. The outputs and directories of the other
+    // projects are looked up in the index of the stored targets.
+    Map<File, GradleSourceSet> outputsToSourceSet = new HashMap<>();
+    Set<File> exclusionFromDependencies = new HashSet<>();
+    for (GradleSourceSet sourceSet : fetchedSourceSets) {
+      addOutput(outputsToSourceSet, sourceSet.getSourceOutputDir(), sourceSet);
+      addOutput(outputsToSourceSet, sourceSet.getResourceOutputDir(), sourceSet);
+      if (sourceSet.getArchiveOutputFiles() != null) {
+        for (File archive : sourceSet.getArchiveOutputFiles()) {
+          addOutput(outputsToSourceSet, archive, sourceSet);
+        }
+      }
+      addAll(exclusionFromDependencies, sourceSet.getSourceDirs());
+      addAll(exclusionFromDependencies, sourceSet.getGeneratedSourceDirs());
+      addAll(exclusionFromDependencies, sourceSet.getResourceDirs());
+    }
+    exclusionFromDependencies.addAll(outputsToSourceSet.keySet());
+
+    for (DefaultGradleSourceSet sourceSet : fetchedSourceSets) {
+      Set<BuildTargetDependency> dependencies = new HashSet<>();
+      if (sourceSet.getBuildTargetDependencies() != null) {
+        dependencies.addAll(sourceSet.getBuildTargetDependencies());
+      }
+      if (sourceSet.getCompileClasspath() != null) {
+        for (File file : sourceSet.getCompileClasspath()) {
+          GradleSourceSet otherSourceSet = getSourceSetOfOutput(file, outputsToSourceSet,
+              currentIndex, projectDirs);
+          if (otherSourceSet != null && otherSourceSet != sourceSet) {
+            dependencies.add(new DefaultBuildTargetDependency(otherSourceSet));
+          }
+        }
+      }
+      sourceSet.setBuildTargetDependencies(dependencies);
+      if (sourceSet.getModuleDependencies() != null) {
+        sourceSet.setModuleDependencies(sourceSet.getModuleDependencies().stream()
+            .filter(dep -> !isExcluded(dep, exclusionFromDependencies, currentIndex,
+                projectDirs))
+            .collect(Collectors.toCollection(LinkedHashSet::new)));
+      }
+      if (sourceSet.getFingerprint() != null) {
+        sourceSet.updateFingerprint();
+      }
+    }
+    return store(new DefaultGradleSourceSets(sourceSets));
+  }
+
+  /**
+   * Check whether the fetched source sets compile against an archive in the build
+   * directory of a stored project which no source set is known to produce. A full sync
+   * only records the archives which are on some classpath, so such an archive can only be
+   * mapped to its build target by fetching all the projects again.
+   *
+   * @param projectSourceSets the source sets fetched for the given projects.
+   * @param projectDirs the directories of the fetched projects.
+   * @return {@code true} if a full sync is needed to resolve the classpath.
+   */
+  public boolean hasUnknownArchives(GradleSourceSets projectSourceSets, Set<File> projectDirs) {
+    BuildTargetIndex currentIndex = index;
+    Set<File> fetchedOutputs = new HashSet<>();
+    for (GradleSourceSet sourceSet : projectSourceSets.getGradleSourceSets()) {
+      addAll(fetchedOutputs, sourceSet.getArchiveOutputFiles());
+    }
+    for (GradleSourceSet sourceSet : projectSourceSets.getGradleSourceSets()) {
+      if (sourceSet.getCompileClasspath() == null) {
+        continue;
+      }
+      for (File file : sourceSet.getCompileClasspath()) {
+        if (file.getName().endsWith(".jar") && !fetchedOutputs.contains(file)
+            && currentIndex.getTargetOfOutput(file) == null
+            && isInBuildDirectory(file, currentIndex, projectDirs)) {
+          return true;
+        }
       }
     }
-    updateBuildTargetDependencies(newCache.values(), projectPathToBuildTargetId);
-    this.cache = newCache;
-    return changedTargets;
+    return false;
+  }
+
+  /**
+   * Whether the file lies in the build directory of a stored project, taken as the
+   * top-level directory of the project holding its source output directory.
+   */
+  private static boolean isInBuildDirectory(File file, BuildTargetIndex index,
+      Set<File> projectDirs) {
+    Path filePath = file.getAbsoluteFile().toPath();
+    for (File dir = file.getAbsoluteFile().getParentFile(); dir != null;
+        dir = dir.getParentFile()) {
+      List<GradleBuildTarget> targets = index.getTargetsOfProject(dir);
+      if (targets.isEmpty()) {
+        continue;
+      }
+      if (projectDirs.contains(targets.get(0).getSourceSet().getProjectDir())) {
+        // the fetched projects already reported all their archives.
+        return false;
+      }
+      Path projectPath = dir.toPath();
+      for (GradleBuildTarget target : targets) {
+        File outputDir = target.getSourceSet().getSourceOutputDir();
+        if (outputDir == null) {
+          continue;
+        }
+        Path outputPath = outputDir.getAbsoluteFile().toPath();
+        if (outputPath.startsWith(projectPath)
+            && outputPath.getNameCount() > projectPath.getNameCount()) {
+          Path buildDir = projectPath.resolve(outputPath.getName(projectPath.getNameCount()));
+          return filePath.startsWith(buildDir);
+        }
+      }
+      return false;
+    }
+    return false;
+  }
+
+  private static void addOutput(Map<File, GradleSourceSet> outputsToSourceSet, File output,
+      GradleSourceSet sourceSet) {
+    if (output != null) {
+      outputsToSourceSet.put(output, sourceSet);
+    }
+  }
+
+  private static void addAll(Set<File> files, Collection<File> toAdd) {
+    if (toAdd != null) {
+      files.addAll(toAdd);
+    }
+  }
+
+  /**
+   * Return the source set producing the output, either one of the fetched source sets or
+   * a stored one of the projects which were not fetched.
+   */
+  private static GradleSourceSet getSourceSetOfOutput(File output,
+      Map<File, GradleSourceSet> fetchedOutputs, BuildTargetIndex index, Set<File> projectDirs) {
+    GradleSourceSet sourceSet = fetchedOutputs.get(output);
+    if (sourceSet == null) {
+      GradleBuildTarget target = index.getTargetOfOutput(output);
+      if (target != null && !projectDirs.contains(target.getSourceSet().getProjectDir())) {
+        sourceSet = target.getSourceSet();
+      }
+    }
+    return sourceSet;
+  }
+
+  /**
+   * Module dependencies pointing to the directories of other projects are project
+   * dependencies, which the build target dependencies already cover.
+   */
+  private static boolean isExcluded(GradleModuleDependency dependency,
+      Set<File> fetchedExclusions, BuildTargetIndex index, Set<File> projectDirs) {
+    for (Artifact artifact : dependency.getArtifacts()) {
+      URI uri = artifact.getUri();
+      if (uri == null || !"file".equals(uri.getScheme())) {
+        continue;
+      }
+      File file = new File(uri);
+      if (fetchedExclusions.contains(file)
+          || getSourceSetOfOutput(file, Collections.emptyMap(), index, projectDirs) != null) {
+        return true;
+      }
+      for (GradleBuildTarget target : index.getTargetsOfSourceRoot(file)) {
+        if (!projectDirs.contains(target.getSourceSet().getProjectDir())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return all the stored Gradle source sets.
+   */
+  public GradleSourceSets getGradleSourceSets() {
+    return new DefaultGradleSourceSets(index.getTargets().values().stream()
+        .map(GradleBuildTarget::getSourceSet)
+        .collect(Collectors.toList()));
   }
 
   public GradleBuildTarget getGradleBuildTarget(BuildTargetIdentifier buildTargetId) {
-    return cache.get(buildTargetId);
+    return index.getTargets().get(buildTargetId);
   }
 
   public List<GradleBuildTarget> getAllGradleBuildTargets() {
-    return new ArrayList<>(cache.values());
+    return new ArrayList<>(index.getTargets().values());
+  }
+
+  /**
+   * Return the task paths of all the build targets, mapped to the targets they belong to.
+   * The map must not be modified.
+   */
+  public Map<String, Set<BuildTargetIdentifier>> getTaskPathToTargets() {
+    return index.getTaskPathToTargets();
+  }
+
+  /**
+   * Return the build targets with a source, generated source or resource directory
+   * containing the given file.
+   */
+  public Set<GradleBuildTarget> getGradleBuildTargetsContaining(File file) {
+    return index.getTargetsContaining(file);
   }
 
   private URI getBuildTargetUri(URI projectUri, String sourceSetName) {
@@ -169,26 +461,71 @@ public class BuildTargetManager {
 
   /**
    * Iterate all the gradle build targets, and update their dependencies with
-   * the help of 'project path to id' mapping.
+   * the help of the project directories in the index. The carried over build targets
+   * may still be read by concurrent requests, so they are replaced instead of modified
+   * when their dependencies change, e.g. because a 'main' target was created or deleted.
+   *
+   * @return whether a carried over build target was replaced.
    */
-  private void updateBuildTargetDependencies(
-      Collection<GradleBuildTarget> gradleBuildTargets,
-      Map<String, BuildTargetIdentifier> projectPathToBuildTargetId
+  private boolean updateBuildTargetDependencies(
+      Map<BuildTargetIdentifier, GradleBuildTarget> gradleBuildTargets,
+      Map<BuildTargetIdentifier, GradleBuildTarget> oldCache,
+      BuildTargetIndex index,
+      List<BuildTargetEvent> events
   ) {
-    for (GradleBuildTarget gradleBuildTarget : gradleBuildTargets) {
+    boolean replaced = false;
+    for (Map.Entry<BuildTargetIdentifier, GradleBuildTarget> entry
+        : gradleBuildTargets.entrySet()) {
+      GradleBuildTarget gradleBuildTarget = entry.getValue();
       Set<BuildTargetDependency> buildTargetDependencies =
           gradleBuildTarget.getSourceSet().getBuildTargetDependencies();
-      if (buildTargetDependencies != null) {
-        List<BuildTargetIdentifier> btDependencies = buildTargetDependencies.stream()
-            .map(btDependency -> {
-              String path = btDependency.getProjectDir();
-              return projectPathToBuildTargetId.get(path);
-            })
-            .filter(Objects::nonNull)
-            .distinct()
-            .collect(Collectors.toList());
-        gradleBuildTarget.getBuildTarget().setDependencies(btDependencies);
+      if (buildTargetDependencies == null) {
+        continue;
+      }
+      List<BuildTargetIdentifier> btDependencies = buildTargetDependencies.stream()
+          .map(btDependency -> getMainBuildTargetId(index, btDependency.getProjectDir()))
+          .filter(Objects::nonNull)
+          .distinct()
+          .collect(Collectors.toList());
+      BuildTarget bt = gradleBuildTarget.getBuildTarget();
+      if (btDependencies.equals(bt.getDependencies())) {
+        continue;
+      }
+      if (oldCache.get(entry.getKey()) != gradleBuildTarget) {
+        // created by this store, nobody else sees it yet.
+        bt.setDependencies(btDependencies);
+      } else {
+        entry.setValue(new GradleBuildTarget(copyBuildTarget(bt, btDependencies),
+            gradleBuildTarget.getSourceSet()));
+        events.add(createEvent(entry.getKey(), BuildTargetEventKind.CHANGED));
+        replaced = true;
+      }
+    }
+    return replaced;
+  }
+
+  private static BuildTarget copyBuildTarget(BuildTarget bt,
+      List<BuildTargetIdentifier> dependencies) {
+    BuildTarget copy = new BuildTarget(bt.getId(), bt.getTags(), bt.getLanguageIds(),
+        dependencies, bt.getCapabilities());
+    copy.setDisplayName(bt.getDisplayName());
+    copy.setBaseDirectory(bt.getBaseDirectory());
+    copy.setDataKind(bt.getDataKind());
+    copy.setData(bt.getData());
+    return copy;
+  }
+
+  /**
+   * Return the id of the 'main' build target of the project, 'test' and other source
+   * sets are ignored.
+   */
+  private static BuildTargetIdentifier getMainBuildTargetId(BuildTargetIndex index,
+      String projectDir) {
+    for (GradleBuildTarget target : index.getTargetsOfProject(new File(projectDir))) {
+      if ("main".equals(target.getSourceSet().getSourceSetName())) {
+        return target.getBuildTarget().getId();
       }
     }
+    return null;
   }
 }
@@ -0,0 +1,89 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.managers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.microsoft.java.bs.core.internal.gradle.GradleApiConnector;
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.GradleClassifierArtifacts;
+import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
+
+import ch.epfl.scala.bsp4j.BuildClient;
+
+/**
+ * Resolve the sources and javadoc jars of the external modules on demand, when the
+ * sync skips them. The results are cached until the next sync.
+ */
+public class ClassifierArtifactManager {
+
+  private final GradleApiConnector connector;
+
+  private final PreferenceManager preferenceManager;
+
+  private final Set<File> resolvedProjectDirs = ConcurrentHashMap.newKeySet();
+
+  private final Map<String, List<Artifact>> classifierArtifacts = new ConcurrentHashMap<>();
+
+  public ClassifierArtifactManager(GradleApiConnector connector,
+      PreferenceManager preferenceManager) {
+    this.connector = connector;
+    this.preferenceManager = preferenceManager;
+  }
+
+  /**
+   * Whether the sync skips the sources and javadoc jars.
+   */
+  public static boolean isEnabled() {
+    return Boolean.getBoolean("bsp.plugin.lazyclassifiers.enabled");
+  }
+
+  /**
+   * Resolve the classifier artifacts of the given projects unless they are cached.
+   */
+  public synchronized void resolve(Set<File> projectDirs, BuildClient client) {
+    Set<File> unresolvedProjectDirs = new HashSet<>(projectDirs);
+    unresolvedProjectDirs.removeAll(resolvedProjectDirs);
+    if (unresolvedProjectDirs.isEmpty()) {
+      return;
+    }
+    GradleClassifierArtifacts result = connector.getClassifierArtifacts(
+        preferenceManager.getRootUri(), unresolvedProjectDirs, client);
+    classifierArtifacts.putAll(result.getClassifierArtifacts());
+    resolvedProjectDirs.addAll(unresolvedProjectDirs);
+  }
+
+  /**
+   * Return the artifacts of the dependency, including the resolved classifier artifacts.
+   * It may be called concurrently, e.g. while building the items of a large request.
+   */
+  public List<Artifact> getArtifacts(GradleModuleDependency dependency) {
+    List<Artifact> resolved = classifierArtifacts.get(GradleClassifierArtifacts.getModuleKey(
+        dependency.getGroup(), dependency.getModule(), dependency.getVersion()));
+    if (resolved == null) {
+      return dependency.getArtifacts();
+    }
+    List<Artifact> artifacts = new ArrayList<>(dependency.getArtifacts());
+    for (Artifact artifact : resolved) {
+      if (!artifacts.contains(artifact)) {
+        artifacts.add(artifact);
+      }
+    }
+    return artifacts;
+  }
+
+  /**
+   * Drop the cached artifacts, the dependencies may have changed.
+   */
+  public synchronized void clear() {
+    resolvedProjectDirs.clear();
+    classifierArtifacts.clear();
+  }
+}
@@ -0,0 +1,192 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.managers;
+
+import static com.microsoft.java.bs.core.Launcher.LOGGER;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.logging.Level;
+
+import org.gradle.util.GradleVersion;
+
+import com.microsoft.java.bs.core.Constants;
+import com.microsoft.java.bs.core.Launcher;
+import com.microsoft.java.bs.core.internal.gradle.BuildFileFingerprints;
+import com.microsoft.java.bs.core.internal.gradle.GradleBuildKind;
+import com.microsoft.java.bs.core.internal.gradle.Utils;
+import com.microsoft.java.bs.core.internal.model.BuildTargetSnapshot;
+import com.microsoft.java.bs.core.internal.model.Preferences;
+import com.microsoft.java.bs.gradle.model.GradleSourceSets;
+
+/**
+ * Persist the result of the last Gradle sync under the workspace, so that a new
+ * session can answer requests before its own sync has finished.
+ */
+public class SnapshotManager {
+
+  /**
+   * Bump this when the layout of the persisted model changes.
+   */
+  static final int FORMAT_VERSION = 2;
+
+  private static final String SNAPSHOT_DIR = ".gradle/build-server";
+
+  private static final String SNAPSHOT_FILE = "build-targets.snapshot";
+
+  private final PreferenceManager preferenceManager;
+
+  public SnapshotManager(PreferenceManager preferenceManager) {
+    this.preferenceManager = preferenceManager;
+  }
+
+  /**
+   * Load the source sets of the last sync.
+   *
+   * @return the source sets, or {@code null} if there is no snapshot or it is stale.
+   */
+  public GradleSourceSets load() {
+    File snapshotFile = getSnapshotFile();
+    if (snapshotFile == null || !snapshotFile.isFile()) {
+      return null;
+    }
+
+    BuildTargetSnapshot snapshot;
+    try (ObjectInputStream in = new ObjectInputStream(
+        new BufferedInputStream(Files.newInputStream(snapshotFile.toPath())))) {
+      snapshot = (BuildTargetSnapshot) in.readObject();
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      LOGGER.log(Level.WARNING, "Failed to read the build target snapshot, ignoring it.", e);
+      return null;
+    }
+
+    if (!Objects.equals(getSnapshotKey(), snapshot.getKey())) {
+      LOGGER.info("Discard the build target snapshot, the build environment has changed.");
+      return null;
+    }
+
+    if (!BuildFileFingerprints.isUpToDate(snapshot.getFingerprints())) {
+      LOGGER.info("Discard the build target snapshot, the build files have changed.");
+      return null;
+    }
+    return snapshot.getSourceSets();
+  }
+
+  /**
+   * Persist the source sets of a sync. Failures are logged and otherwise ignored.
+   */
+  public void save(GradleSourceSets sourceSets) {
+    File snapshotFile = getSnapshotFile();
+    if (snapshotFile == null || sourceSets == null) {
+      return;
+    }
+
+    BuildTargetSnapshot snapshot = new BuildTargetSnapshot(getSnapshotKey(),
+        BuildFileFingerprints.of(sourceSets), sourceSets);
+    try {
+      Path dir = snapshotFile.toPath().getParent();
+      Files.createDirectories(dir);
+      // write to a temporary file first so that a crash never leaves a partial snapshot.
+      Path temp = Files.createTempFile(dir, SNAPSHOT_FILE, ".tmp");
+      try (ObjectOutputStream out = new ObjectOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeObject(snapshot);
+      }
+      Files.move(temp, snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Failed to write the build target snapshot.", e);
+    }
+  }
+
+  /**
+   * Return the snapshot file of the workspace, or {@code null} if snapshots are
+   * disabled or the workspace is unknown.
+   */
+  File getSnapshotFile() {
+    if (Boolean.getBoolean("bsp.plugin.snapshot.disabled")) {
+      return null;
+    }
+    URI rootUri = preferenceManager.getRootUri();
+    if (rootUri == null) {
+      return null;
+    }
+    return new File(new File(new File(rootUri), SNAPSHOT_DIR), SNAPSHOT_FILE);
+  }
+
+  /**
+   * Build a key from everything outside of the build scripts that affects the result
+   * of a sync.
+   */
+  String getSnapshotKey() {
+    Preferences preferences = preferenceManager.getPreferences();
+    StringBuilder key = new StringBuilder();
+    key.append(FORMAT_VERSION).append('|').append(Constants.SERVER_VERSION);
+    key.append('|').append(getPluginStamp());
+    key.append('|').append(getGradleStamp(preferences));
+    key.append('|').append(preferenceManager.getClientSupportedLanguages());
+    key.append('|').append(Boolean.getBoolean("bsp.plugin.lazyclassifiers.enabled"));
+    if (preferences != null) {
+      key.append('|').append(preferences.getGradleJavaHome());
+      key.append('|').append(preferences.getGradleUserHome());
+      key.append('|').append(preferences.getGradleArguments());
+      key.append('|').append(preferences.getGradleJvmArguments());
+    }
+    return key.toString();
+  }
+
+  /**
+   * The plugin is shipped next to the init script, so the content of that directory
+   * stands for the plugin version.
+   */
+  private String getPluginStamp() {
+    String pluginDir = System.getProperty(Launcher.PROP_PLUGIN_DIR);
+    if (pluginDir == null) {
+      return "";
+    }
+    File[] files = new File(pluginDir).listFiles();
+    if (files == null) {
+      return "";
+    }
+    Arrays.sort(files);
+    StringBuilder stamp = new StringBuilder();
+    for (File file : files) {
+      stamp.append(file.getName()).append(':').append(file.length()).append(':')
+          .append(file.lastModified()).append(';');
+    }
+    return stamp.toString();
+  }
+
+  /**
+   * Describe the Gradle distribution. Wrapper builds are covered by the fingerprint
+   * of the wrapper properties.
+   */
+  private String getGradleStamp(Preferences preferences) {
+    if (preferences == null) {
+      return "";
+    }
+    GradleBuildKind buildKind = Utils.getEffectiveBuildKind(
+        new File(preferenceManager.getRootUri()), preferences);
+    switch (buildKind) {
+      case SPECIFIED_VERSION:
+        return buildKind + ":" + preferences.getGradleVersion();
+      case SPECIFIED_INSTALLATION:
+        return buildKind + ":" + preferences.getGradleHome();
+      case TAPI:
+        return buildKind + ":" + GradleVersion.current().getVersion();
+      default:
+        return buildKind.toString();
+    }
+  }
+}
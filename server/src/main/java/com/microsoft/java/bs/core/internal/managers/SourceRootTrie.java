@@ -0,0 +1,84 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.managers;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.microsoft.java.bs.core.internal.model.GradleBuildTarget;
+
+/**
+ * Maps the source, generated source and resource roots of the build targets by their
+ * path segments, so that the targets containing a file are found by walking the
+ * segments of its path once, no matter how many roots there are.
+ */
+class SourceRootTrie {
+
+  private final Node root = new Node();
+
+  void add(File sourceRoot, GradleBuildTarget target) {
+    Node node = root;
+    for (String segment : getSegments(sourceRoot)) {
+      node = node.children.computeIfAbsent(segment, k -> new Node());
+    }
+    if (!node.targets.contains(target)) {
+      node.targets.add(target);
+    }
+  }
+
+  /**
+   * Return the targets having exactly the given root.
+   */
+  List<GradleBuildTarget> get(File sourceRoot) {
+    Node node = root;
+    for (String segment : getSegments(sourceRoot)) {
+      node = node.children.get(segment);
+      if (node == null) {
+        return Collections.emptyList();
+      }
+    }
+    return Collections.unmodifiableList(node.targets);
+  }
+
+  /**
+   * Return the targets with a root that is the given file or one of its parents.
+   */
+  Set<GradleBuildTarget> findContaining(File file) {
+    Set<GradleBuildTarget> targets = new LinkedHashSet<>();
+    Node node = root;
+    for (String segment : getSegments(file)) {
+      node = node.children.get(segment);
+      if (node == null) {
+        break;
+      }
+      targets.addAll(node.targets);
+    }
+    return targets;
+  }
+
+  private static List<String> getSegments(File file) {
+    Path path = file.toPath().toAbsolutePath().normalize();
+    List<String> segments = new ArrayList<>(path.getNameCount() + 1);
+    if (path.getRoot() != null) {
+      segments.add(path.getRoot().toString());
+    }
+    for (Path name : path) {
+      segments.add(name.toString());
+    }
+    return segments;
+  }
+
+  private static class Node {
+    private final Map<String, Node> children = new HashMap<>();
+
+    private final List<GradleBuildTarget> targets = new ArrayList<>(1);
+  }
+}
@@ -0,0 +1,53 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.model;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import com.microsoft.java.bs.gradle.model.GradleSourceSets;
+
+/**
+ * The persisted result of a Gradle sync, used to answer requests before the
+ * first sync of a session has finished.
+ */
+public class BuildTargetSnapshot implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Identifies the environment the snapshot was taken in, e.g. the server, plugin
+   * and Gradle versions. A snapshot with a different key is discarded.
+   */
+  private final String key;
+
+  /**
+   * Hashes of the build scripts which were used to create the source sets, keyed by
+   * absolute path. An empty hash means the file did not exist.
+   */
+  private final Map<String, String> fingerprints;
+
+  private final GradleSourceSets sourceSets;
+
+  /**
+   * Constructor for {@link BuildTargetSnapshot}.
+   */
+  public BuildTargetSnapshot(String key, Map<String, String> fingerprints,
+      GradleSourceSets sourceSets) {
+    this.key = key;
+    this.fingerprints = fingerprints;
+    this.sourceSets = sourceSets;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public Map<String, String> getFingerprints() {
+    return fingerprints;
+  }
+
+  public GradleSourceSets getSourceSets() {
+    return sourceSets;
+  }
+}
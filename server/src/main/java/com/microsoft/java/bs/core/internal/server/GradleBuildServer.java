@@ -82,13 +82,18 @@ public class GradleBuildServer implements BuildServer, JavaBuildServer, ScalaBui
 
   @Override
   public void onBuildInitialized() {
-    handleNotification("build/initialized", lifecycleService::onBuildInitialized, true /*async*/);
+    handleNotification("build/initialized", () -> {
+      lifecycleService.onBuildInitialized();
+      buildTargetService.startInitialSync();
+    }, true /*async*/);
   }
 
   @Override
   public CompletableFuture<Object> buildShutdown() {
-    return handleRequest("build/shutdown", cc ->
-        lifecycleService.shutdown());
+    return handleRequest("build/shutdown", cc -> {
+      buildTargetService.shutdown();
+      return lifecycleService.shutdown();
+    });
   }
 
   @Override
@@ -119,8 +124,8 @@ public class GradleBuildServer implements BuildServer, JavaBuildServer, ScalaBui
   @Override
   public CompletableFuture<InverseSourcesResult> buildTargetInverseSources(
       InverseSourcesParams params) {
-    // TODO Auto-generated method stub
-    throw new UnsupportedOperationException("Unimplemented method 'buildTargetInverseSources'");
+    return handleRequest("buildTarget/inverseSources", cc ->
+        buildTargetService.getBuildTargetInverseSources(params));
   }
 
   @Override
@@ -0,0 +1,55 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.microsoft.java.bs.core.internal.model.GradleBuildTarget;
+
+import ch.epfl.scala.bsp4j.BuildTargetIdentifier;
+
+/**
+ * The response items of each build target, e.g. its sources or javac options, computed
+ * once and returned for all the following requests. The items of a target are dropped
+ * when the target changes. They are also never returned for another
+ * {@link GradleBuildTarget} instance than the one they were computed from, so a request
+ * racing with a sync cannot leave stale items behind.
+ */
+class BuildTargetItemCache {
+
+  private final Map<BuildTargetIdentifier, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Return the item of the given type for the target, computing it if necessary.
+   * The returned items are shared and must not be modified.
+   */
+  <T> T get(BuildTargetIdentifier btId, GradleBuildTarget target, Class<T> type,
+      Function<GradleBuildTarget, T> factory) {
+    Entry entry = entries.get(btId);
+    if (entry == null || entry.target != target) {
+      entry = new Entry(target);
+      entries.put(btId, entry);
+    }
+    return type.cast(entry.items.computeIfAbsent(type, k -> factory.apply(target)));
+  }
+
+  /**
+   * Drop the items of the given target.
+   */
+  void invalidate(BuildTargetIdentifier btId) {
+    entries.remove(btId);
+  }
+
+  private static class Entry {
+    private final GradleBuildTarget target;
+
+    private final Map<Class<?>, Object> items = new ConcurrentHashMap<>();
+
+    Entry(GradleBuildTarget target) {
+      this.target = target;
+    }
+  }
+}
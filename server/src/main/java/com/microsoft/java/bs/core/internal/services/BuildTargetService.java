@@ -8,19 +8,30 @@ import static com.microsoft.java.bs.core.Launcher.LOGGER;
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
+import com.microsoft.java.bs.core.internal.gradle.BuildFileFingerprints;
+import com.microsoft.java.bs.core.internal.gradle.BuildFileWatcher;
+import com.microsoft.java.bs.core.internal.gradle.GeneratedSourcesProbe;
 import com.microsoft.java.bs.core.internal.gradle.GradleApiConnector;
 import com.microsoft.java.bs.core.internal.managers.BuildTargetManager;
+import com.microsoft.java.bs.core.internal.managers.ClassifierArtifactManager;
 import com.microsoft.java.bs.core.internal.managers.PreferenceManager;
+import com.microsoft.java.bs.core.internal.managers.SnapshotManager;
 import com.microsoft.java.bs.core.internal.model.GradleBuildTarget;
 import com.microsoft.java.bs.core.internal.reporter.CompileProgressReporter;
 import com.microsoft.java.bs.core.internal.reporter.DefaultProgressReporter;
@@ -28,6 +39,7 @@ import com.microsoft.java.bs.core.internal.reporter.ProgressReporter;
 import com.microsoft.java.bs.core.internal.utils.JsonUtils;
 import com.microsoft.java.bs.core.internal.utils.TelemetryUtils;
 import com.microsoft.java.bs.core.internal.utils.UriUtils;
+import com.microsoft.java.bs.gradle.model.Artifact;
 import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
 import com.microsoft.java.bs.gradle.model.GradleSourceSet;
 import com.microsoft.java.bs.gradle.model.GradleSourceSets;
@@ -50,6 +62,8 @@ import ch.epfl.scala.bsp4j.DependencyModulesResult;
 import ch.epfl.scala.bsp4j.DependencySourcesItem;
 import ch.epfl.scala.bsp4j.DependencySourcesParams;
 import ch.epfl.scala.bsp4j.DependencySourcesResult;
+import ch.epfl.scala.bsp4j.InverseSourcesParams;
+import ch.epfl.scala.bsp4j.InverseSourcesResult;
 import ch.epfl.scala.bsp4j.JavacOptionsItem;
 import ch.epfl.scala.bsp4j.JavacOptionsParams;
 import ch.epfl.scala.bsp4j.JavacOptionsResult;
@@ -82,6 +96,7 @@ import ch.epfl.scala.bsp4j.TestParamsDataKind;
 import ch.epfl.scala.bsp4j.TestResult;
 import ch.epfl.scala.bsp4j.WorkspaceBuildTargetsResult;
 import org.apache.commons.lang3.StringUtils;
+import org.gradle.tooling.CancellationToken;
 
 /**
  * Service to handle build target related BSP requests.
@@ -90,15 +105,65 @@ public class BuildTargetService {
 
   private static final String MAVEN_DATA_KIND = "maven";
 
+  /**
+   * The number of targets from which the items of a request are built in parallel.
+   */
+  private static final int PARALLEL_ITEMS_THRESHOLD = 64;
+
   private final BuildTargetManager buildTargetManager;
 
   private final GradleApiConnector connector;
 
   private final PreferenceManager preferenceManager;
 
+  private final SnapshotManager snapshotManager;
+
+  private final ClassifierArtifactManager classifierArtifactManager;
+
+  private final BuildFileWatcher buildFileWatcher;
+
+  private final ReloadScheduler reloadScheduler;
+
+  private final BuildTargetItemCache itemCache;
+
+  private final WorkspaceInternTable internTable;
+
+  /**
+   * Builds the items of large requests. Its parallelism defaults to the number of
+   * processors and can be set with the {@code bsp.plugin.itempool.size} property.
+   */
+  private final ForkJoinPool itemPool;
+
+  /**
+   * The generated source roots found after the last compilation of each set of targets,
+   * which the next compilation of the same targets compares against without walking the
+   * build directories before the build starts. Only the first compilation of a set of
+   * targets scans them on the request thread, which lists a few levels of the generated
+   * directories of the compiled projects. The scans are dropped by every sync and clean,
+   * so that they never stand for roots which the build targets do not know about.
+   */
+  private final Map<Set<BuildTargetIdentifier>, Set<File>> generatedSourceRoots =
+      Collections.synchronizedMap(new LinkedHashMap<Set<BuildTargetIdentifier>, Set<File>>(
+          16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Set<BuildTargetIdentifier>, Set<File>> e) {
+          return size() > 32;
+        }
+      });
+
   private BuildClient client;
 
-  private boolean firstTime;
+  /**
+   * The first sync of the session, started once the client is initialized or by the first
+   * request, whichever comes first. All the requests wait for it instead of syncing on
+   * their own. It is reset if it fails, so that the next request retries it.
+   */
+  private volatile CompletableFuture<Void> initialSync;
+
+  /**
+   * Fingerprints of the build files at the time of the last sync.
+   */
+  private volatile Map<String, String> buildFileFingerprints;
 
   /**
    * Initialize the build target service.
@@ -111,42 +176,177 @@ public class BuildTargetService {
     this.buildTargetManager = buildTargetManager;
     this.connector = connector;
     this.preferenceManager = preferenceManager;
-    this.firstTime = true;
+    this.snapshotManager = new SnapshotManager(preferenceManager);
+    this.classifierArtifactManager = new ClassifierArtifactManager(connector, preferenceManager);
+    this.buildFileWatcher = new BuildFileWatcher(this::onBuildFilesChanged);
+    this.reloadScheduler = new ReloadScheduler(this::syncWorkspace);
+    this.itemCache = new BuildTargetItemCache();
+    this.internTable = new WorkspaceInternTable();
+    this.itemPool = new ForkJoinPool(Math.max(1, Integer.getInteger("bsp.plugin.itempool.size",
+        Runtime.getRuntime().availableProcessors())));
+  }
+
+  private List<BuildTargetEvent> updateBuildTargets(CancellationToken token) {
+    Set<File> changedProjectDirs = getChangedProjectDirs();
+    GradleSourceSets projectSourceSets = null;
+    if (changedProjectDirs != null) {
+      LOGGER.info("Fetch the source sets of the changed projects: " + changedProjectDirs);
+      projectSourceSets = connector.getGradleSourceSets(
+          preferenceManager.getRootUri(), changedProjectDirs, client, token);
+      if (buildTargetManager.hasUnknownArchives(projectSourceSets, changedProjectDirs)) {
+        LOGGER.info("The changed projects depend on an unmapped archive of the build,"
+            + " fetch all the projects.");
+        projectSourceSets = null;
+      }
+    }
+    GradleSourceSets sourceSets;
+    List<BuildTargetEvent> events;
+    if (projectSourceSets == null) {
+      sourceSets = connector.getGradleSourceSets(preferenceManager.getRootUri(), null, client,
+          token);
+      events = buildTargetManager.store(sourceSets);
+    } else {
+      events = buildTargetManager.store(projectSourceSets, changedProjectDirs);
+      sourceSets = buildTargetManager.getGradleSourceSets();
+    }
+    for (BuildTargetEvent event : events) {
+      itemCache.invalidate(event.getTarget());
+    }
+    if (!events.isEmpty()) {
+      // drop the values of the jars and directories which are no longer used.
+      internTable.retainAll(sourceSets.getGradleSourceSets());
+    }
+    classifierArtifactManager.clear();
+    generatedSourceRoots.clear();
+    buildFileFingerprints = BuildFileFingerprints.of(sourceSets);
+    buildFileWatcher.watch(buildFileFingerprints.keySet());
+    snapshotManager.save(sourceSets);
+    return events;
   }
 
-  private List<BuildTargetIdentifier> updateBuildTargets() {
-    GradleSourceSets sourceSets = connector.getGradleSourceSets(
-        preferenceManager.getRootUri(), client);
-    return buildTargetManager.store(sourceSets);
+  /**
+   * Return the directories of the projects whose build files changed since the last
+   * sync, or {@code null} if all the projects have to be fetched.
+   */
+  private Set<File> getChangedProjectDirs() {
+    if (!Boolean.getBoolean("bsp.plugin.incrementalsync.enabled")
+        || buildFileFingerprints == null) {
+      return null;
+    }
+    Set<File> changedProjectDirs = BuildFileFingerprints.getChangedProjectDirs(
+        buildFileFingerprints, buildTargetManager.getGradleSourceSets());
+    if (changedProjectDirs == null || changedProjectDirs.isEmpty()) {
+      return null;
+    }
+    return changedProjectDirs;
   }
 
   private BuildTargetManager getBuildTargetManager() {
-    if (firstTime) {
-      updateBuildTargets();
-      firstTime = false;
+    CompletableFuture<Void> sync = initialSync;
+    if (sync == null) {
+      sync = startInitialSync();
+    }
+    join(sync);
+    return buildTargetManager;
+  }
+
+  /**
+   * Start the first sync of the session in the background, if it is not already running.
+   * The build targets are loaded from the snapshot of the last session when there is a
+   * valid one, and a sync is then started to refresh them.
+   *
+   * @return a future which completes once the build targets are available.
+   */
+  public synchronized CompletableFuture<Void> startInitialSync() {
+    if (initialSync == null) {
+      CompletableFuture<Void> sync = CompletableFuture.supplyAsync(snapshotManager::load)
+          .thenCompose(this::initializeBuildTargets);
+      initialSync = sync;
+      sync.whenComplete((result, error) -> {
+        if (error != null) {
+          resetInitialSync(sync);
+        }
+      });
+    }
+    return initialSync;
+  }
+
+  private synchronized void resetInitialSync(CompletableFuture<Void> failedSync) {
+    if (initialSync == failedSync) {
+      initialSync = null;
+    }
+  }
+
+  private CompletableFuture<Void> initializeBuildTargets(GradleSourceSets snapshot) {
+    if (snapshot != null) {
+      buildTargetManager.store(snapshot);
+      buildFileFingerprints = BuildFileFingerprints.of(snapshot);
+      LOGGER.info("Loaded " + buildTargetManager.getAllGradleBuildTargets().size()
+          + " build targets from the snapshot.");
+      reloadScheduler.schedule().exceptionally(e -> {
+        LOGGER.log(Level.WARNING, "Failed to refresh the build targets of the snapshot.", e);
+        return null;
+      });
+      return CompletableFuture.completedFuture(null);
+    }
+    return reloadScheduler.schedule().thenRun(() -> {
       int buildTargetCount = buildTargetManager.getAllGradleBuildTargets().size();
       Map<String, String> map = TelemetryUtils.getMetadataMap("buildTargetCount",
           String.valueOf(buildTargetCount));
       LOGGER.log(Level.INFO, "Found " + buildTargetCount + " build targets during initialization.",
           map);
-    }
-    return buildTargetManager;
+    });
   }
 
   /**
    * reload the sourcesets from scratch and notify the BSP client if they have changed.
+   * Concurrent reloads are merged into a single sync.
    */
   public void reloadWorkspace() {
-    List<BuildTargetIdentifier> changedTargets = updateBuildTargets();
-    if (!changedTargets.isEmpty()) {
-      notifyBuildTargetsChanged(changedTargets);
+    join(reloadScheduler.schedule());
+  }
+
+  private static void join(CompletableFuture<Void> future) {
+    try {
+      future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void syncWorkspace(CancellationToken token) {
+    List<BuildTargetEvent> events = updateBuildTargets(token);
+    if (!events.isEmpty()) {
+      notifyBuildTargetsChanged(events);
     }
   }
   
-  private void notifyBuildTargetsChanged(List<BuildTargetIdentifier> changedTargets) {
-    List<BuildTargetEvent> events = changedTargets.stream()
-        .map(BuildTargetEvent::new)
-        .collect(Collectors.toList());
+  /**
+   * Reload the workspace when the content of the build files differs from the last
+   * sync. Files which were only touched, e.g. by a checkout of the same revision, are
+   * ignored.
+   */
+  private void onBuildFilesChanged() {
+    Map<String, String> fingerprints = buildFileFingerprints;
+    if (fingerprints == null || BuildFileFingerprints.isUpToDate(fingerprints)) {
+      return;
+    }
+    LOGGER.info("Build files changed, reloading the workspace.");
+    reloadWorkspace();
+  }
+
+  /**
+   * Stop watching the build files and stop the threads building the response items.
+   */
+  public void shutdown() {
+    buildFileWatcher.close();
+    itemPool.shutdown();
+  }
+
+  private void notifyBuildTargetsChanged(List<BuildTargetEvent> events) {
     DidChangeBuildTarget param = new DidChangeBuildTarget(events);
     client.onBuildTargetDidChange(param);
   }
@@ -170,126 +370,189 @@ public class BuildTargetService {
     return new WorkspaceBuildTargetsResult(targets);
   }
 
+  /**
+   * Build the response item of each target, skipping the targets without one. Large
+   * requests, e.g. for all the targets during an import, are split into chunks built on
+   * {@link #itemPool}, the items keep the order of the targets. The item factories may run
+   * concurrently, they only read the immutable build targets and the concurrent caches.
+   */
+  private <T> List<T> collectItems(List<BuildTargetIdentifier> targets,
+      Function<BuildTargetIdentifier, T> itemFactory) {
+    // initialize the build targets on the calling thread.
+    getBuildTargetManager();
+    if (targets.size() < PARALLEL_ITEMS_THRESHOLD) {
+      return buildItems(targets, itemFactory);
+    }
+    int chunkCount = itemPool.getParallelism() * 4;
+    int chunkSize = (targets.size() + chunkCount - 1) / chunkCount;
+    List<ForkJoinTask<List<T>>> chunks = new ArrayList<>();
+    for (int start = 0; start < targets.size(); start += chunkSize) {
+      List<BuildTargetIdentifier> chunk = targets.subList(start,
+          Math.min(start + chunkSize, targets.size()));
+      Callable<List<T>> task = () -> buildItems(chunk, itemFactory);
+      chunks.add(itemPool.submit(task));
+    }
+    List<T> items = new ArrayList<>(targets.size());
+    for (ForkJoinTask<List<T>> chunk : chunks) {
+      items.addAll(chunk.join());
+    }
+    return items;
+  }
+
+  private static <T> List<T> buildItems(List<BuildTargetIdentifier> targets,
+      Function<BuildTargetIdentifier, T> itemFactory) {
+    List<T> items = new ArrayList<>(targets.size());
+    for (BuildTargetIdentifier btId : targets) {
+      T item = itemFactory.apply(btId);
+      if (item != null) {
+        items.add(item);
+      }
+    }
+    return items;
+  }
+
   /**
    * Get the sources.
    */
   public SourcesResult getBuildTargetSources(SourcesParams params) {
-    List<SourcesItem> sourceItems = new ArrayList<>();
-    for (BuildTargetIdentifier btId : params.getTargets()) {
+    List<SourcesItem> sourceItems = collectItems(params.getTargets(), btId -> {
       GradleBuildTarget target = getGradleBuildTarget(btId);
       if (target == null) {
         LOGGER.warning("Skip sources collection for the build target: " + btId.getUri()
             + ". Because it cannot be found in the cache.");
-        continue;
+        return null;
       }
 
-      GradleSourceSet sourceSet = target.getSourceSet();
-      List<SourceItem> sources = new ArrayList<>();
-      for (File sourceDir : sourceSet.getSourceDirs()) {
-        sources.add(new SourceItem(sourceDir.toURI().toString(), SourceItemKind.DIRECTORY,
-            false /* generated */));
-      }
-      for (File sourceDir : sourceSet.getGeneratedSourceDirs()) {
-        sources.add(new SourceItem(sourceDir.toURI().toString(), SourceItemKind.DIRECTORY,
-            true /* generated */));
+      return itemCache.get(btId, target, SourcesItem.class,
+          t -> createSourcesItem(btId, t.getSourceSet()));
+    });
+    return new SourcesResult(sourceItems);
+  }
+
+  private SourcesItem createSourcesItem(BuildTargetIdentifier btId, GradleSourceSet sourceSet) {
+    List<SourceItem> sources = new ArrayList<>();
+    for (File sourceDir : sourceSet.getSourceDirs()) {
+      sources.add(new SourceItem(internTable.toDirectoryUri(sourceDir),
+          SourceItemKind.DIRECTORY, false /* generated */));
+    }
+    for (File sourceDir : sourceSet.getGeneratedSourceDirs()) {
+      sources.add(new SourceItem(internTable.toDirectoryUri(sourceDir),
+          SourceItemKind.DIRECTORY, true /* generated */));
+    }
+    return new SourcesItem(btId, sources);
+  }
+
+  /**
+   * Get the build targets containing the given document.
+   */
+  public InverseSourcesResult getBuildTargetInverseSources(InverseSourcesParams params) {
+    URI uri = UriUtils.getUriFromString(params.getTextDocument().getUri());
+    List<BuildTargetIdentifier> targets = new ArrayList<>();
+    if ("file".equals(uri.getScheme())) {
+      for (GradleBuildTarget target :
+          getBuildTargetManager().getGradleBuildTargetsContaining(new File(uri))) {
+        targets.add(target.getBuildTarget().getId());
       }
-      SourcesItem item = new SourcesItem(btId, sources);
-      sourceItems.add(item);
     }
-    return new SourcesResult(sourceItems);
+    return new InverseSourcesResult(targets);
   }
 
   /**
    * Get the resources.
    */
   public ResourcesResult getBuildTargetResources(ResourcesParams params) {
-    List<ResourcesItem> items = new ArrayList<>();
-    for (BuildTargetIdentifier btId : params.getTargets()) {
+    List<ResourcesItem> items = collectItems(params.getTargets(), btId -> {
       GradleBuildTarget target = getGradleBuildTarget(btId);
       if (target == null) {
         LOGGER.warning("Skip resources collection for the build target: " + btId.getUri()
             + ". Because it cannot be found in the cache.");
-        continue;
+        return null;
       }
 
-      GradleSourceSet sourceSet = target.getSourceSet();
-      List<String> resources = new ArrayList<>();
-      for (File resourceDir : sourceSet.getResourceDirs()) {
-        resources.add(resourceDir.toURI().toString());
-      }
-      ResourcesItem item = new ResourcesItem(btId, resources);
-      items.add(item);
-    }
+      return itemCache.get(btId, target, ResourcesItem.class,
+          t -> createResourcesItem(btId, t.getSourceSet()));
+    });
     return new ResourcesResult(items);
   }
 
+  private ResourcesItem createResourcesItem(BuildTargetIdentifier btId,
+      GradleSourceSet sourceSet) {
+    List<String> resources = new ArrayList<>();
+    for (File resourceDir : sourceSet.getResourceDirs()) {
+      resources.add(internTable.toDirectoryUri(resourceDir));
+    }
+    return new ResourcesItem(btId, resources);
+  }
+
   /**
    * Get the output paths.
    */
   public OutputPathsResult getBuildTargetOutputPaths(OutputPathsParams params) {
-    List<OutputPathsItem> items = new ArrayList<>();
-    for (BuildTargetIdentifier btId : params.getTargets()) {
+    List<OutputPathsItem> items = collectItems(params.getTargets(), btId -> {
       GradleBuildTarget target = getGradleBuildTarget(btId);
       if (target == null) {
         LOGGER.warning("Skip output collection for the build target: " + btId.getUri()
             + ". Because it cannot be found in the cache.");
-        continue;
+        return null;
       }
 
-      GradleSourceSet sourceSet = target.getSourceSet();
-      List<OutputPathItem> outputPaths = new ArrayList<>();
-      // Due to the BSP spec does not support additional flags for each output path,
-      // we will leverage the query of the uri to mark whether this is a source/resource
-      // output path.
-      // TODO: file a BSP spec issue to support additional flags for each output path.
-
-      File sourceOutputDir = sourceSet.getSourceOutputDir();
-      if (sourceOutputDir != null) {
-        outputPaths.add(new OutputPathItem(
-            sourceOutputDir.toURI().toString() + "?kind=source",
-            OutputPathItemKind.DIRECTORY
-        ));
-      }
+      return itemCache.get(btId, target, OutputPathsItem.class,
+          t -> createOutputPathsItem(btId, t.getSourceSet()));
+    });
+    return new OutputPathsResult(items);
+  }
 
-      File resourceOutputDir = sourceSet.getResourceOutputDir();
-      if (resourceOutputDir != null) {
-        outputPaths.add(new OutputPathItem(
-            resourceOutputDir.toURI().toString() + "?kind=resource",
-            OutputPathItemKind.DIRECTORY
-        ));
-      }
+  private OutputPathsItem createOutputPathsItem(BuildTargetIdentifier btId,
+      GradleSourceSet sourceSet) {
+    List<OutputPathItem> outputPaths = new ArrayList<>();
+    // Due to the BSP spec does not support additional flags for each output path,
+    // we will leverage the query of the uri to mark whether this is a source/resource
+    // output path.
+    // TODO: file a BSP spec issue to support additional flags for each output path.
+
+    File sourceOutputDir = sourceSet.getSourceOutputDir();
+    if (sourceOutputDir != null) {
+      outputPaths.add(new OutputPathItem(
+          internTable.toDirectoryUri(sourceOutputDir) + "?kind=source",
+          OutputPathItemKind.DIRECTORY
+      ));
+    }
 
-      OutputPathsItem item = new OutputPathsItem(btId, outputPaths);
-      items.add(item);
+    File resourceOutputDir = sourceSet.getResourceOutputDir();
+    if (resourceOutputDir != null) {
+      outputPaths.add(new OutputPathItem(
+          internTable.toDirectoryUri(resourceOutputDir) + "?kind=resource",
+          OutputPathItemKind.DIRECTORY
+      ));
     }
-    return new OutputPathsResult(items);
+    return new OutputPathsItem(btId, outputPaths);
   }
 
   /**
    * Get artifacts dependencies - old way.
    */
   public DependencySourcesResult getBuildTargetDependencySources(DependencySourcesParams params) {
-    List<DependencySourcesItem> items = new ArrayList<>();
-    for (BuildTargetIdentifier btId : params.getTargets()) {
+    resolveClassifierArtifacts(params.getTargets());
+    List<DependencySourcesItem> items = collectItems(params.getTargets(), btId -> {
       GradleBuildTarget target = getGradleBuildTarget(btId);
       if (target == null) {
         LOGGER.warning("Skip output collection for the build target: " + btId.getUri()
                 + ". Because it cannot be found in the cache.");
-        continue;
+        return null;
       }
 
       GradleSourceSet sourceSet = target.getSourceSet();
       List<String> sources = new ArrayList<>();
       for (GradleModuleDependency dep : sourceSet.getModuleDependencies()) {
-        List<String> artifacts = dep.getArtifacts().stream()
+        List<String> artifacts = classifierArtifactManager.getArtifacts(dep).stream()
                 .filter(a -> "sources".equals(a.getClassifier()))
                 .map(a -> a.getUri().toString())
                 .collect(Collectors.toList());
         sources.addAll(artifacts);
       }
 
-      items.add(new DependencySourcesItem(btId, sources));
-    }
+      return new DependencySourcesItem(btId, sources);
+    });
     return new DependencySourcesResult(items);
   }
 
@@ -297,42 +560,70 @@ public class BuildTargetService {
    * Get artifacts dependencies.
    */
   public DependencyModulesResult getBuildTargetDependencyModules(DependencyModulesParams params) {
-    List<DependencyModulesItem> items = new ArrayList<>();
-    for (BuildTargetIdentifier btId : params.getTargets()) {
+    resolveClassifierArtifacts(params.getTargets());
+    List<DependencyModulesItem> items = collectItems(params.getTargets(), btId -> {
       GradleBuildTarget target = getGradleBuildTarget(btId);
       if (target == null) {
         LOGGER.warning("Skip output collection for the build target: " + btId.getUri()
             + ". Because it cannot be found in the cache.");
-        continue;
+        return null;
       }
 
       GradleSourceSet sourceSet = target.getSourceSet();
       List<DependencyModule> modules = new ArrayList<>();
       for (GradleModuleDependency dep : sourceSet.getModuleDependencies()) {
-        DependencyModule module = new DependencyModule(dep.getModule(), dep.getVersion());
-        module.setDataKind(MAVEN_DATA_KIND);
-        List<MavenDependencyModuleArtifact> artifacts = dep.getArtifacts().stream().map(a -> {
-          MavenDependencyModuleArtifact artifact = new MavenDependencyModuleArtifact(
-              a.getUri().toString());
-          artifact.setClassifier(a.getClassifier());
-          return artifact;
-        }).collect(Collectors.toList());
-        MavenDependencyModule mavenModule = new MavenDependencyModule(
-            dep.getGroup(),
-            dep.getModule(),
-            dep.getVersion(),
-            artifacts
-        );
-        module.setData(mavenModule);
-        modules.add(module);
+        List<Artifact> dependencyArtifacts = classifierArtifactManager.getArtifacts(dep);
+        modules.add(internTable.getDependencyModule(dep, dependencyArtifacts,
+            () -> createDependencyModule(dep, dependencyArtifacts)));
       }
 
-      DependencyModulesItem item = new DependencyModulesItem(btId, modules);
-      items.add(item);
-    }
+      return new DependencyModulesItem(btId, modules);
+    });
     return new DependencyModulesResult(items);
   }
 
+  private DependencyModule createDependencyModule(GradleModuleDependency dep,
+      List<Artifact> dependencyArtifacts) {
+    DependencyModule module = new DependencyModule(dep.getModule(), dep.getVersion());
+    module.setDataKind(MAVEN_DATA_KIND);
+    List<MavenDependencyModuleArtifact> artifacts = dependencyArtifacts.stream().map(a -> {
+      MavenDependencyModuleArtifact artifact = new MavenDependencyModuleArtifact(
+          a.getUri().toString());
+      artifact.setClassifier(a.getClassifier());
+      return artifact;
+    }).collect(Collectors.toList());
+    MavenDependencyModule mavenModule = new MavenDependencyModule(
+        dep.getGroup(),
+        dep.getModule(),
+        dep.getVersion(),
+        artifacts
+    );
+    module.setData(mavenModule);
+    return module;
+  }
+
+  /**
+   * Resolve the sources and javadoc jars of the projects of the given targets, if the
+   * sync skipped them. Failures are logged, the artifacts are then left out.
+   */
+  private void resolveClassifierArtifacts(List<BuildTargetIdentifier> targets) {
+    if (!ClassifierArtifactManager.isEnabled()) {
+      return;
+    }
+    Set<File> projectDirs = new HashSet<>();
+    for (BuildTargetIdentifier btId : targets) {
+      GradleBuildTarget target = getGradleBuildTarget(btId);
+      if (target != null) {
+        projectDirs.add(target.getSourceSet().getProjectDir());
+      }
+    }
+    try {
+      classifierArtifactManager.resolve(projectDirs, client);
+    } catch (IllegalStateException e) {
+      LOGGER.log(Level.WARNING, "Failed to resolve the sources and javadoc jars.", e);
+    }
+  }
+
   /**
    * Compile the build targets.
    */
@@ -341,16 +632,45 @@ public class BuildTargetService {
       return new CompileResult(StatusCode.OK);
     } else {
       ProgressReporter reporter = new CompileProgressReporter(client,
-          params.getOriginId(), getFullTaskPathMap());
+          params.getOriginId(), getBuildTargetManager().getTaskPathToTargets());
+      boolean reloadEnabled = !Boolean.getBoolean("bsp.plugin.reloadworkspace.disabled");
+      Set<BuildTargetIdentifier> compiledTargets = new HashSet<>(params.getTargets());
+      List<GradleSourceSet> compiledSourceSets = null;
+      Set<File> rootsBefore = null;
+      if (reloadEnabled) {
+        compiledSourceSets = getSourceSetsWithDependencies(params.getTargets());
+        rootsBefore = generatedSourceRoots.get(compiledTargets);
+        if (rootsBefore == null) {
+          rootsBefore = GeneratedSourcesProbe.scan(compiledSourceSets);
+        }
+      }
       StatusCode code = runTasks(params.getTargets(), this::getBuildTaskName, reporter);
       CompileResult result = new CompileResult(code);
       result.setOriginId(params.getOriginId());
 
-      // Schedule a task to refetch the build targets after compilation, this is to
-      // auto detect the source roots changes for those code generation framework,
-      // such as Protocol Buffer.
-      if (!Boolean.getBoolean("bsp.plugin.reloadworkspace.disabled")) {
-        CompletableFuture.runAsync(this::reloadWorkspace);
+      // Schedule a task to refetch the build targets after compilation if generated
+      // source roots appeared or disappeared, this is to auto detect the source roots
+      // changes for those code generation framework, such as Protocol Buffer.
+      if (reloadEnabled) {
+        List<GradleSourceSet> sourceSets = compiledSourceSets;
+        Set<File> previousRoots = rootsBefore;
+        CompletableFuture.supplyAsync(() -> GeneratedSourcesProbe.scan(sourceSets))
+            .thenCompose(roots -> {
+              if (previousRoots.equals(roots)) {
+                generatedSourceRoots.put(compiledTargets, roots);
+                return CompletableFuture.<Void>completedFuture(null);
+              }
+              // the reload drops all the scans, and the next compilation scans again if
+              // the reload fails.
+              generatedSourceRoots.remove(compiledTargets);
+              LOGGER.info("Generated source roots changed, reloading the workspace.");
+              return reloadScheduler.schedule();
+            })
+            .exceptionally(e -> {
+              LOGGER.log(Level.WARNING,
+                  "Failed to reload the workspace after the generated source roots changed.", e);
+              return null;
+            });
       }
       return result;
     }
@@ -362,23 +682,32 @@ public class BuildTargetService {
   public CleanCacheResult cleanCache(CleanCacheParams params) {
     ProgressReporter reporter = new DefaultProgressReporter(client);
     StatusCode code = runTasks(params.getTargets(), this::getCleanTaskName, reporter);
+    // the generated source roots are deleted along with the build directories.
+    generatedSourceRoots.clear();
     return new CleanCacheResult(null, code == StatusCode.OK);
   }
 
   /**
-   * create a map of all known taskpaths to the build targets they affect.
-   * used to associate progress events to the correct target.
+   * Return the source sets of the given targets and of all the targets they depend on,
+   * which are compiled along with them.
    */
-  private Map<String, Set<BuildTargetIdentifier>> getFullTaskPathMap() {
-    Map<String, Set<BuildTargetIdentifier>> fullTaskPathMap = new HashMap<>();
-    for (GradleBuildTarget buildTarget : buildTargetManager.getAllGradleBuildTargets()) {
-      Set<String> tasks = buildTarget.getSourceSet().getTaskNames();
-      BuildTargetIdentifier btId = buildTarget.getBuildTarget().getId();
-      for (String taskName : tasks) {
-        fullTaskPathMap.computeIfAbsent(taskName, k -> new HashSet<>()).add(btId);
+  private List<GradleSourceSet> getSourceSetsWithDependencies(
+      List<BuildTargetIdentifier> targets) {
+    List<GradleSourceSet> sourceSets = new ArrayList<>();
+    Set<BuildTargetIdentifier> visited = new HashSet<>();
+    List<BuildTargetIdentifier> queue = new ArrayList<>(targets);
+    while (!queue.isEmpty()) {
+      BuildTargetIdentifier btId = queue.remove(queue.size() - 1);
+      if (!visited.add(btId)) {
+        continue;
+      }
+      GradleBuildTarget target = getGradleBuildTarget(btId);
+      if (target != null) {
+        sourceSets.add(target.getSourceSet());
+        queue.addAll(target.getBuildTarget().getDependencies());
       }
     }
-    return fullTaskPathMap;
+    return sourceSets;
   }
 
   /**
@@ -405,13 +734,12 @@ public class BuildTargetService {
    * Get the Java compiler options.
    */
   public JavacOptionsResult getBuildTargetJavacOptions(JavacOptionsParams params) {
-    List<JavacOptionsItem> items = new ArrayList<>();
-    for (BuildTargetIdentifier btId : params.getTargets()) {
+    List<JavacOptionsItem> items = collectItems(params.getTargets(), btId -> {
       GradleBuildTarget target = getGradleBuildTarget(btId);
       if (target == null) {
         LOGGER.warning("Skip javac options collection for the build target: " + btId.getUri()
             + ". Because it cannot be found in the cache.");
-        continue;
+        return null;
       }
 
       GradleSourceSet sourceSet = target.getSourceSet();
@@ -419,38 +747,39 @@ public class BuildTargetService {
       if (javaExtension == null) {
         LOGGER.warning("Skip javac options collection for the build target: " + btId.getUri()
             + ". Because the java extension cannot be found from source set.");
-        continue;
+        return null;
       }
-      List<String> classpath = sourceSet.getCompileClasspath().stream()
-          .map(file -> file.toURI().toString())
-          .collect(Collectors.toList());
-      String classesDir;
-      if (sourceSet.getSourceOutputDir() != null) {
-        classesDir = sourceSet.getSourceOutputDir().toURI().toString();
-      } else {
-        classesDir = "";
-      }
-      items.add(new JavacOptionsItem(
+      return itemCache.get(btId, target, JavacOptionsItem.class, t -> new JavacOptionsItem(
           btId,
           javaExtension.getCompilerArgs(),
-          classpath,
-          classesDir
+          getClasspathUris(sourceSet),
+          getClassesDirUri(sourceSet)
       ));
-    }
+    });
     return new JavacOptionsResult(items);
   }
+
+  private List<String> getClasspathUris(GradleSourceSet sourceSet) {
+    return internTable.toUris(sourceSet.getCompileClasspath());
+  }
+
+  private String getClassesDirUri(GradleSourceSet sourceSet) {
+    if (sourceSet.getSourceOutputDir() != null) {
+      return internTable.toDirectoryUri(sourceSet.getSourceOutputDir());
+    }
+    return "";
+  }
   
   /**
    * Get the Scala compiler options.
    */
   public ScalacOptionsResult getBuildTargetScalacOptions(ScalacOptionsParams params) {
-    List<ScalacOptionsItem> items = new ArrayList<>();
-    for (BuildTargetIdentifier btId : params.getTargets()) {
+    List<ScalacOptionsItem> items = collectItems(params.getTargets(), btId -> {
       GradleBuildTarget target = getGradleBuildTarget(btId);
       if (target == null) {
         LOGGER.warning("Skip scalac options collection for the build target: " + btId.getUri()
             + ". Because it cannot be found in the cache.");
-        continue;
+        return null;
       }
 
       GradleSourceSet sourceSet = target.getSourceSet();
@@ -458,24 +787,15 @@ public class BuildTargetService {
       if (scalaExtension == null) {
         LOGGER.warning("Skip scalac options collection for the build target: " + btId.getUri()
                 + ". Because the scalac extension cannot be found from source set.");
-        continue;
-      }
-      List<String> classpath = sourceSet.getCompileClasspath().stream()
-          .map(file -> file.toURI().toString())
-          .collect(Collectors.toList());
-      String classesDir;
-      if (sourceSet.getSourceOutputDir() != null) {
-        classesDir = sourceSet.getSourceOutputDir().toURI().toString();
-      } else {
-        classesDir = "";
+        return null;
       }
-      items.add(new ScalacOptionsItem(
+      return itemCache.get(btId, target, ScalacOptionsItem.class, t -> new ScalacOptionsItem(
           btId,
           scalaExtension.getScalaCompilerArgs(),
-          classpath,
-          classesDir
+          getClasspathUris(sourceSet),
+          getClassesDirUri(sourceSet)
       ));
-    }
+    });
     return new ScalacOptionsResult(items);
   }
 
@@ -487,7 +807,7 @@ public class BuildTargetService {
     testResult.setOriginId(params.getOriginId());
     // running tests can trigger compilation that must be reported on
     CompileProgressReporter compileProgressReporter = new CompileProgressReporter(client,
-            params.getOriginId(), getFullTaskPathMap());
+            params.getOriginId(), getBuildTargetManager().getTaskPathToTargets());
     Map<URI, Set<BuildTargetIdentifier>> groupedTargets =
         groupBuildTargetsByRootDir(params.getTargets());
     for (Map.Entry<URI, Set<BuildTargetIdentifier>> entry : groupedTargets.entrySet()) {
@@ -84,6 +84,7 @@ public class LifecycleService {
     BuildServerCapabilities capabilities = new BuildServerCapabilities();
     capabilities.setResourcesProvider(true);
     capabilities.setOutputPathsProvider(true);
+    capabilities.setInverseSourcesProvider(true);
     capabilities.setDependencyModulesProvider(true);
     capabilities.setDependencySourcesProvider(true);
     capabilities.setCanReload(true);
@@ -0,0 +1,96 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.services;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import org.gradle.tooling.CancellationToken;
+import org.gradle.tooling.CancellationTokenSource;
+import org.gradle.tooling.GradleConnector;
+
+/**
+ * Run workspace syncs one at a time. While a sync is running, at most one more is
+ * queued and all the reload requests in between share it. The running sync is
+ * cancelled once another one is queued, since its result would be outdated anyway.
+ */
+class ReloadScheduler {
+
+  private final Consumer<CancellationToken> sync;
+
+  private Run running;
+
+  private Run queued;
+
+  /**
+   * Constructor for {@link ReloadScheduler}.
+   *
+   * @param sync the sync to run, which throws a {@link CancellationException} when it
+   *     is cancelled through the given token.
+   */
+  ReloadScheduler(Consumer<CancellationToken> sync) {
+    this.sync = sync;
+  }
+
+  /**
+   * Request a sync.
+   *
+   * @return a future which completes once a sync started after this request finished.
+   */
+  synchronized CompletableFuture<Void> schedule() {
+    if (running == null) {
+      Run run = new Run();
+      running = run;
+      start(run);
+      return run.future;
+    }
+    if (queued == null) {
+      queued = new Run();
+      running.tokenSource.cancel();
+    }
+    return queued.future;
+  }
+
+  private void start(Run run) {
+    CompletableFuture.runAsync(() -> sync.accept(run.tokenSource.token()))
+        .whenComplete((result, error) -> finish(run, error));
+  }
+
+  private void finish(Run run, Throwable error) {
+    Run next;
+    synchronized (this) {
+      next = queued;
+      queued = null;
+      running = next;
+      if (next != null) {
+        start(next);
+      }
+    }
+
+    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+    if (cause == null) {
+      run.future.complete(null);
+    } else if (cause instanceof CancellationException && next != null) {
+      // the sync was superseded, its callers wait for the next one instead.
+      next.future.whenComplete((result, nextError) -> {
+        if (nextError == null) {
+          run.future.complete(null);
+        } else {
+          run.future.completeExceptionally(nextError);
+        }
+      });
+    } else {
+      run.future.completeExceptionally(cause);
+    }
+  }
+
+  private static class Run {
+    private final CancellationTokenSource tokenSource =
+        GradleConnector.newCancellationTokenSource();
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+  }
+}
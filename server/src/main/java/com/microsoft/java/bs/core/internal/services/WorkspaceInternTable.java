@@ -0,0 +1,132 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.services;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.microsoft.java.bs.core.internal.utils.UriUtils;
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
+import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+
+import ch.epfl.scala.bsp4j.DependencyModule;
+
+/**
+ * Shares the values which the responses of many build targets have in common, e.g. the
+ * URI of a jar on the classpath of thousands of targets, so that each of them is only
+ * computed and kept in memory once for the whole workspace.
+ */
+class WorkspaceInternTable {
+
+  private final Map<File, String> uris = new ConcurrentHashMap<>();
+
+  private final Map<File, String> directoryUris = new ConcurrentHashMap<>();
+
+  private final Map<List<File>, List<String>> classpaths = new ConcurrentHashMap<>();
+
+  private final Map<List<Object>, DependencyModule> dependencyModules = new ConcurrentHashMap<>();
+
+  /**
+   * Return the URI string of a classpath entry. Archives are told apart by their name and
+   * any other entry which is not a file is taken as a directory, so the URI of e.g. the
+   * output directory of another project does not change once that project is built.
+   */
+  String toUri(File file) {
+    return uris.computeIfAbsent(file, f -> isArchive(f) || f.isFile()
+        ? UriUtils.getFileUri(f, false) : toDirectoryUri(f));
+  }
+
+  /**
+   * Return the URI string of a directory, ending with a slash whether or not the directory
+   * exists yet, so the URI of e.g. an output directory does not change once it is created.
+   */
+  String toDirectoryUri(File dir) {
+    return directoryUris.computeIfAbsent(dir, d -> UriUtils.getFileUri(d, true));
+  }
+
+  private static boolean isArchive(File file) {
+    String name = file.getName();
+    return name.endsWith(".jar") || name.endsWith(".zip");
+  }
+
+  /**
+   * Return the URI strings of the classpath. Equal classpaths share the same immutable list.
+   */
+  List<String> toUris(List<File> classpath) {
+    List<String> classpathUris = classpaths.get(classpath);
+    if (classpathUris == null) {
+      List<String> list = new ArrayList<>(classpath.size());
+      for (File file : classpath) {
+        list.add(toUri(file));
+      }
+      // copy the key, the list of the source set may be modified later.
+      List<File> key = Collections.unmodifiableList(new ArrayList<>(classpath));
+      classpathUris = Collections.unmodifiableList(list);
+      List<String> existing = classpaths.putIfAbsent(key, classpathUris);
+      if (existing != null) {
+        classpathUris = existing;
+      }
+    }
+    return classpathUris;
+  }
+
+  /**
+   * Return the module of the dependency with the given artifacts, creating it only if
+   * no other target has the same one. The returned module must not be modified.
+   */
+  DependencyModule getDependencyModule(GradleModuleDependency dependency,
+      List<Artifact> artifacts, Supplier<DependencyModule> factory) {
+    return dependencyModules.computeIfAbsent(Arrays.asList(dependency, artifacts),
+        k -> factory.get());
+  }
+
+  /**
+   * Drop the values which none of the given source sets uses any more, e.g. after a sync
+   * changed the build targets. The values of the unchanged targets stay shared with the
+   * items cached for them.
+   */
+  void retainAll(Collection<GradleSourceSet> sourceSets) {
+    Set<File> files = new HashSet<>();
+    Set<List<File>> classpathKeys = new HashSet<>();
+    Set<GradleModuleDependency> dependencies = new HashSet<>();
+    for (GradleSourceSet sourceSet : sourceSets) {
+      addAll(files, sourceSet.getSourceDirs());
+      addAll(files, sourceSet.getGeneratedSourceDirs());
+      addAll(files, sourceSet.getResourceDirs());
+      if (sourceSet.getSourceOutputDir() != null) {
+        files.add(sourceSet.getSourceOutputDir());
+      }
+      if (sourceSet.getResourceOutputDir() != null) {
+        files.add(sourceSet.getResourceOutputDir());
+      }
+      if (sourceSet.getCompileClasspath() != null) {
+        files.addAll(sourceSet.getCompileClasspath());
+        classpathKeys.add(sourceSet.getCompileClasspath());
+      }
+      if (sourceSet.getModuleDependencies() != null) {
+        dependencies.addAll(sourceSet.getModuleDependencies());
+      }
+    }
+    uris.keySet().retainAll(files);
+    directoryUris.keySet().retainAll(files);
+    classpaths.keySet().retainAll(classpathKeys);
+    dependencyModules.keySet().removeIf(key -> !dependencies.contains(key.get(0)));
+  }
+
+  private static void addAll(Set<File> files, Collection<File> toAdd) {
+    if (toAdd != null) {
+      files.addAll(toAdd);
+    }
+  }
+}
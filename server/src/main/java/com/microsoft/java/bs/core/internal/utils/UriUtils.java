@@ -3,6 +3,7 @@
 
 package com.microsoft.java.bs.core.internal.utils;
 
+import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -23,6 +24,29 @@ public class UriUtils {
     }
   }
 
+  /**
+   * Returns the URI string of the file without checking the file system. Unlike
+   * {@link File#toURI()}, the URI of a directory ends with a slash whether or not the
+   * directory exists yet.
+   */
+  public static String getFileUri(File file, boolean directory) {
+    String path = file.getAbsolutePath();
+    if (File.separatorChar != '/') {
+      path = path.replace(File.separatorChar, '/');
+    }
+    if (!path.startsWith("/")) {
+      path = "/" + path;
+    }
+    if (directory && !path.endsWith("/")) {
+      path = path + "/";
+    }
+    try {
+      return new URI("file", null, path, null).toString();
+    } catch (URISyntaxException e) {
+      throw new IllegalArgumentException("Invalid path: " + path, e);
+    }
+  }
+
   /**
    * Returns the URI without query.
    */
@@ -0,0 +1,121 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BuildFileWatcherTest {
+
+  @TempDir
+  File workspace;
+
+  @Test
+  void testBurstOfChangesRunsCallbackOnce() throws InterruptedException, ExecutionException {
+    AtomicInteger count = new AtomicInteger();
+    BuildFileWatcher watcher = new BuildFileWatcher(count::incrementAndGet, 50);
+    try {
+      watcher.watch(Collections.emptyList());
+
+      watcher.scheduleChange();
+      watcher.scheduleChange();
+      watcher.scheduleChange();
+      // the callbacks run in order, so the earlier ones would have run by now.
+      watcher.awaitPendingChange();
+
+      assertEquals(1, count.get());
+    } finally {
+      watcher.close();
+    }
+  }
+
+  @Test
+  void testUnrelatedChangeIsIgnored() throws IOException {
+    File buildFile = new File(workspace, "build.gradle");
+    Files.writeString(buildFile.toPath(), "apply plugin: 'java'");
+    BuildFileWatcher watcher = new BuildFileWatcher(() -> { }, 50);
+    try {
+      watcher.watch(Arrays.asList(buildFile.getAbsolutePath()));
+
+      Path dir = workspace.toPath();
+      assertFalse(watcher.handleEvents(dir,
+          Arrays.asList(event(StandardWatchEventKinds.ENTRY_CREATE, "Main.java"))));
+      assertTrue(watcher.handleEvents(dir,
+          Arrays.asList(event(StandardWatchEventKinds.ENTRY_MODIFY, "build.gradle"))));
+    } finally {
+      watcher.close();
+    }
+  }
+
+  @Test
+  void testFileInCreatedDirectoryIsSeen() throws Exception {
+    File buildFile = new File(workspace, "build.gradle");
+    File catalog = new File(workspace, "gradle/libs.versions.toml");
+    Files.writeString(buildFile.toPath(), "apply plugin: 'java'");
+    AtomicInteger count = new AtomicInteger();
+    BuildFileWatcher watcher = new BuildFileWatcher(count::incrementAndGet, 10);
+    try {
+      watcher.watch(Arrays.asList(buildFile.getAbsolutePath(), catalog.getAbsolutePath()));
+
+      // the directory is watched once it is created, without another call to watch().
+      assertTrue(catalog.getParentFile().mkdirs());
+      Path gradleDir = catalog.getParentFile().toPath();
+      assertTrue(poll(() -> watcher.isWatching(gradleDir) && count.get() > 0));
+      watcher.awaitPendingChange();
+      int countBefore = count.get();
+
+      Files.writeString(catalog.toPath(), "[versions]");
+      assertTrue(poll(() -> count.get() > countBefore));
+    } finally {
+      watcher.close();
+    }
+  }
+
+  private static boolean poll(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+
+  private static WatchEvent<Path> event(WatchEvent.Kind<Path> kind, String name) {
+    return new WatchEvent<Path>() {
+      @Override
+      public WatchEvent.Kind<Path> kind() {
+        return kind;
+      }
+
+      @Override
+      public int count() {
+        return 1;
+      }
+
+      @Override
+      public Path context() {
+        return Path.of(name);
+      }
+    };
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSet;
+
+class GeneratedSourcesProbeTest {
+
+  @TempDir
+  File projectDir;
+
+  @Test
+  void testNewSourceRootIsDetected() throws IOException {
+    List<GradleSourceSet> sourceSets = getSourceSets();
+    Set<File> before = GeneratedSourcesProbe.scan(sourceSets);
+
+    writeFile("build/generated/source/proto/main/java/com/example/Foo.java");
+
+    assertNotEquals(before, GeneratedSourcesProbe.scan(sourceSets));
+  }
+
+  @Test
+  void testNewPackageIsIgnored() throws IOException {
+    writeFile("build/generated/source/proto/main/java/com/example/Foo.java");
+    List<GradleSourceSet> sourceSets = getSourceSets();
+    Set<File> before = GeneratedSourcesProbe.scan(sourceSets);
+
+    writeFile("build/generated/source/proto/main/java/com/other/Bar.java");
+
+    assertEquals(before, GeneratedSourcesProbe.scan(sourceSets));
+  }
+
+  @Test
+  void testKnownSourceRootOutsideBuildDir() throws IOException {
+    File generatedDir = new File(projectDir, "src/generated/java");
+    DefaultGradleSourceSet sourceSet = (DefaultGradleSourceSet) getSourceSets().get(0);
+    sourceSet.setGeneratedSourceDirs(Collections.singleton(generatedDir));
+    List<GradleSourceSet> sourceSets = Arrays.asList(sourceSet);
+    Set<File> before = GeneratedSourcesProbe.scan(sourceSets);
+
+    writeFile("src/generated/java/Foo.java");
+
+    assertNotEquals(before, GeneratedSourcesProbe.scan(sourceSets));
+  }
+
+  private List<GradleSourceSet> getSourceSets() {
+    DefaultGradleSourceSet sourceSet = new DefaultGradleSourceSet();
+    sourceSet.setProjectDir(projectDir);
+    sourceSet.setSourceOutputDir(new File(projectDir, "build/classes/java/main"));
+    sourceSet.setGeneratedSourceDirs(Collections.emptySet());
+    return Arrays.asList(sourceSet);
+  }
+
+  private void writeFile(String path) throws IOException {
+    File file = new File(projectDir, path);
+    file.getParentFile().mkdirs();
+    Files.writeString(file.toPath(), "class Foo {}");
+  }
+}
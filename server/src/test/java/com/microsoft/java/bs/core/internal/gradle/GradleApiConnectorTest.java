@@ -245,6 +245,23 @@ class GradleApiConnectorTest {
     assertHasBuildTargetDependency(mainB, mainA);
   }
 
+  @Test
+  void testGetGradleSourceSetsOfProjects() {
+    File projectDir = projectPath.resolve("project-dependency-configuration").toFile();
+    File projectDirB = new File(projectDir, "b");
+    Set<File> projectDirs = new HashSet<>();
+    projectDirs.add(projectDirB);
+    GradleSourceSets gradleSourceSets = withConnector(connector ->
+        connector.getGradleSourceSets(projectDir.toURI(), projectDirs, null));
+    assertEquals(2, gradleSourceSets.getGradleSourceSets().size());
+    for (GradleSourceSet gradleSourceSet : gradleSourceSets.getGradleSourceSets()) {
+      assertEquals(projectDirB, gradleSourceSet.getProjectDir());
+      assertEquals(projectDir, gradleSourceSet.getRootDir());
+    }
+    findSourceSet(gradleSourceSets, "b [main]");
+    findSourceSet(gradleSourceSets, "b [test]");
+  }
+
   @Test
   void testGetGradleDependenciesWithTestConfiguration() {
     File projectDir = projectPath.resolve("project-dependency-test-configuration").toFile();
@@ -4,6 +4,10 @@
 package com.microsoft.java.bs.core.internal.managers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -20,14 +24,21 @@ import java.util.Set;
 import org.junit.jupiter.api.Test;
 
 import com.microsoft.java.bs.core.internal.model.GradleBuildTarget;
+import com.microsoft.java.bs.gradle.model.Artifact;
 import com.microsoft.java.bs.gradle.model.BuildTargetDependency;
+import com.microsoft.java.bs.gradle.model.GradleModuleDependency;
 import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+import com.microsoft.java.bs.gradle.model.GradleSourceSetFingerprint;
 import com.microsoft.java.bs.gradle.model.GradleSourceSets;
 import com.microsoft.java.bs.gradle.model.JavaExtension;
 import com.microsoft.java.bs.gradle.model.LanguageExtension;
 import com.microsoft.java.bs.gradle.model.SupportedLanguages;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSetFingerprint;
 
 import ch.epfl.scala.bsp4j.BuildTarget;
+import ch.epfl.scala.bsp4j.BuildTargetEvent;
+import ch.epfl.scala.bsp4j.BuildTargetEventKind;
+import ch.epfl.scala.bsp4j.BuildTargetIdentifier;
 import ch.epfl.scala.bsp4j.JvmBuildTarget;
 import ch.epfl.scala.bsp4j.extended.JvmBuildTargetEx;
 
@@ -52,6 +63,120 @@ class BuildTargetManagerTest {
     assertEquals("test name", buildTarget.getDisplayName());
   }
 
+  @Test
+  void testStoreKeepsUnchangedTargets() {
+    GradleSourceSet gradleSourceSet = getMockedTestGradleSourceSet();
+    GradleSourceSets gradleSourceSets = mock(GradleSourceSets.class);
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(gradleSourceSet));
+
+    BuildTargetManager manager = new BuildTargetManager();
+    manager.store(gradleSourceSets);
+    GradleBuildTarget first = manager.getAllGradleBuildTargets().get(0);
+    List<BuildTargetEvent> changed = manager.store(gradleSourceSets);
+
+    assertTrue(changed.isEmpty());
+    assertSame(first, manager.getAllGradleBuildTargets().get(0));
+  }
+
+  @Test
+  void testStoreComparesFingerprints() {
+    GradleSourceSet gradleSourceSet = getMockedTestGradleSourceSet();
+    when(gradleSourceSet.getFingerprint()).thenReturn(getFingerprint("a"));
+    GradleSourceSets gradleSourceSets = mock(GradleSourceSets.class);
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(gradleSourceSet));
+    BuildTargetManager manager = new BuildTargetManager();
+    manager.store(gradleSourceSets);
+    GradleBuildTarget first = manager.getAllGradleBuildTargets().get(0);
+
+    // a different instance with the same content is not a change.
+    GradleSourceSet sameSourceSet = getMockedTestGradleSourceSet();
+    when(sameSourceSet.getFingerprint()).thenReturn(getFingerprint("a"));
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(sameSourceSet));
+    assertTrue(manager.store(gradleSourceSets).isEmpty());
+    assertSame(first, manager.getAllGradleBuildTargets().get(0));
+
+    GradleSourceSet changedSourceSet = getMockedTestGradleSourceSet();
+    when(changedSourceSet.getFingerprint()).thenReturn(getFingerprint("b"));
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(changedSourceSet));
+    assertEquals(1, manager.store(gradleSourceSets).size());
+    assertSame(changedSourceSet, manager.getAllGradleBuildTargets().get(0).getSourceSet());
+  }
+
+  @Test
+  void testStoreReportsCreatedAndDeletedTargets() {
+    GradleSourceSet gradleSourceSetFoo = getMockedTestGradleSourceSet();
+    when(gradleSourceSetFoo.getProjectDir()).thenReturn(new File("foo"));
+    GradleSourceSets gradleSourceSets = mock(GradleSourceSets.class);
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(gradleSourceSetFoo));
+    BuildTargetManager manager = new BuildTargetManager();
+    assertTrue(manager.store(gradleSourceSets).isEmpty());
+
+    GradleSourceSet gradleSourceSetBar = getMockedTestGradleSourceSet();
+    when(gradleSourceSetBar.getProjectDir()).thenReturn(new File("bar"));
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(gradleSourceSetBar));
+    List<BuildTargetEvent> events = manager.store(gradleSourceSets);
+
+    assertEquals(2, events.size());
+    assertTrue(events.get(0).getTarget().getUri().contains("bar"));
+    assertEquals(BuildTargetEventKind.CREATED, events.get(0).getKind());
+    assertTrue(events.get(1).getTarget().getUri().contains("foo"));
+    assertEquals(BuildTargetEventKind.DELETED, events.get(1).getKind());
+  }
+
+  @Test
+  void testIndexes() {
+    File sourceDir = new File("foo/src/main/java");
+    File outputDir = new File("foo/build/classes");
+    GradleSourceSet gradleSourceSet = getMockedTestGradleSourceSet();
+    when(gradleSourceSet.getProjectDir()).thenReturn(new File("foo"));
+    when(gradleSourceSet.getTaskNames()).thenReturn(Collections.singleton(":foo:compileJava"));
+    when(gradleSourceSet.getSourceDirs()).thenReturn(Collections.singleton(sourceDir));
+    when(gradleSourceSet.getSourceOutputDir()).thenReturn(outputDir);
+    GradleSourceSets gradleSourceSets = mock(GradleSourceSets.class);
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(gradleSourceSet));
+
+    BuildTargetManager manager = new BuildTargetManager();
+    manager.store(gradleSourceSets);
+
+    GradleBuildTarget target = manager.getAllGradleBuildTargets().get(0);
+    BuildTargetIdentifier btId = target.getBuildTarget().getId();
+    assertEquals(Collections.singleton(btId),
+        manager.getTaskPathToTargets().get(":foo:compileJava"));
+
+    BuildTargetIndex index = new BuildTargetIndex(Collections.singletonMap(btId, target));
+    assertEquals(Arrays.asList(target), index.getTargetsOfProject(new File("foo")));
+    assertEquals(Arrays.asList(target),
+        index.getTargetsOfProject(new File("foo").getAbsoluteFile()));
+    assertEquals(Arrays.asList(target), index.getTargetsOfSourceRoot(sourceDir));
+    assertSame(target, index.getTargetOfOutput(outputDir));
+    assertNull(index.getTargetOfOutput(sourceDir));
+  }
+
+  @Test
+  void testGetBuildTargetsContaining() {
+    GradleSourceSet gradleSourceSetFoo = getMockedTestGradleSourceSet();
+    when(gradleSourceSetFoo.getProjectDir()).thenReturn(new File("foo"));
+    when(gradleSourceSetFoo.getSourceDirs())
+        .thenReturn(Collections.singleton(new File("foo/src/main/java")));
+    GradleSourceSet gradleSourceSetBar = getMockedTestGradleSourceSet();
+    when(gradleSourceSetBar.getProjectDir()).thenReturn(new File("bar"));
+    when(gradleSourceSetBar.getResourceDirs()).thenReturn(Collections.singleton(new File("foo")));
+    GradleSourceSets gradleSourceSets = mock(GradleSourceSets.class);
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(
+        Arrays.asList(gradleSourceSetFoo, gradleSourceSetBar));
+
+    BuildTargetManager manager = new BuildTargetManager();
+    manager.store(gradleSourceSets);
+
+    Set<GradleBuildTarget> targets = manager.getGradleBuildTargetsContaining(
+        new File("foo/src/main/java/pkg/Foo.java"));
+    assertEquals(2, targets.size());
+    targets = manager.getGradleBuildTargetsContaining(new File("foo/build.gradle"));
+    assertEquals(1, targets.size());
+    assertSame(gradleSourceSetBar, targets.iterator().next().getSourceSet());
+    assertTrue(manager.getGradleBuildTargetsContaining(new File("baz/Baz.java")).isEmpty());
+  }
+
   @Test
   void testJvmExtension() {
     GradleSourceSet gradleSourceSet = getMockedTestGradleSourceSet();
@@ -126,6 +251,142 @@ class BuildTargetManagerTest {
     assertTrue(buildTargetBar.getDependencies().contains(buildTargetFoo.getId()));
   }
 
+  @Test
+  void testStoreReplacesTargetsWithChangedDependencies() {
+    BuildTargetDependency buildTargetDependency = mock(BuildTargetDependency.class);
+    when(buildTargetDependency.getProjectDir()).thenReturn(new File("foo").getAbsolutePath());
+    GradleSourceSet gradleSourceSetBar = getMockedTestGradleSourceSet();
+    when(gradleSourceSetBar.getProjectDir()).thenReturn(new File("bar"));
+    when(gradleSourceSetBar.getBuildTargetDependencies())
+        .thenReturn(Collections.singleton(buildTargetDependency));
+    GradleSourceSets gradleSourceSets = mock(GradleSourceSets.class);
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(gradleSourceSetBar));
+    BuildTargetManager manager = new BuildTargetManager();
+    manager.store(gradleSourceSets);
+    GradleBuildTarget first = manager.getAllGradleBuildTargets().get(0);
+    assertTrue(first.getBuildTarget().getDependencies().isEmpty());
+
+    // 'foo' appears, so the unchanged 'bar' gets a new dependency.
+    GradleSourceSet gradleSourceSetFoo = getMockedTestGradleSourceSet();
+    when(gradleSourceSetFoo.getProjectDir()).thenReturn(new File("foo"));
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(
+        Arrays.asList(gradleSourceSetFoo, gradleSourceSetBar));
+    List<BuildTargetEvent> events = manager.store(gradleSourceSets);
+
+    assertEquals(2, events.size());
+    BuildTargetEvent barEvent = events.stream()
+        .filter(event -> event.getTarget().getUri().contains("bar"))
+        .findFirst()
+        .get();
+    assertEquals(BuildTargetEventKind.CHANGED, barEvent.getKind());
+    GradleBuildTarget targetBar = manager.getGradleBuildTarget(barEvent.getTarget());
+    assertNotSame(first, targetBar);
+    assertSame(gradleSourceSetBar, targetBar.getSourceSet());
+    assertEquals(1, targetBar.getBuildTarget().getDependencies().size());
+    // the previous instance may still be read by concurrent requests.
+    assertTrue(first.getBuildTarget().getDependencies().isEmpty());
+  }
+
+  @Test
+  void testStoreProjects() {
+    File fooOutputDir = new File("foo/classes").getAbsoluteFile();
+    GradleSourceSet gradleSourceSetFoo = getMockedTestGradleSourceSet();
+    when(gradleSourceSetFoo.getProjectPath()).thenReturn(":foo");
+    when(gradleSourceSetFoo.getProjectDir()).thenReturn(new File("foo"));
+    when(gradleSourceSetFoo.getSourceOutputDir()).thenReturn(fooOutputDir);
+    GradleSourceSet gradleSourceSetBar = getMockedTestGradleSourceSet();
+    when(gradleSourceSetBar.getProjectPath()).thenReturn(":bar");
+    when(gradleSourceSetBar.getProjectDir()).thenReturn(new File("bar"));
+    GradleSourceSets gradleSourceSets = mock(GradleSourceSets.class);
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(
+        Arrays.asList(gradleSourceSetFoo, gradleSourceSetBar));
+
+    BuildTargetManager manager = new BuildTargetManager();
+    manager.store(gradleSourceSets);
+
+    // 'bar' now depends on the output of 'foo'
+    Artifact artifact = mock(Artifact.class);
+    when(artifact.getUri()).thenReturn(fooOutputDir.toURI());
+    GradleModuleDependency fooOutput = mock(GradleModuleDependency.class);
+    when(fooOutput.getArtifacts()).thenReturn(Arrays.asList(artifact));
+    GradleSourceSet newGradleSourceSetBar = getMockedTestGradleSourceSet();
+    when(newGradleSourceSetBar.getProjectPath()).thenReturn(":bar");
+    when(newGradleSourceSetBar.getProjectDir()).thenReturn(new File("bar"));
+    when(newGradleSourceSetBar.getCompileClasspath()).thenReturn(Arrays.asList(fooOutputDir));
+    when(newGradleSourceSetBar.getModuleDependencies())
+        .thenReturn(new HashSet<>(Arrays.asList(fooOutput)));
+    GradleSourceSets projectSourceSets = mock(GradleSourceSets.class);
+    when(projectSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(newGradleSourceSetBar));
+
+    List<BuildTargetEvent> changed = manager.store(projectSourceSets,
+        Collections.singleton(new File("bar")));
+
+    assertEquals(1, changed.size());
+    assertTrue(changed.get(0).getTarget().getUri().contains("bar"));
+    assertEquals(BuildTargetEventKind.CHANGED, changed.get(0).getKind());
+    List<GradleBuildTarget> list = manager.getAllGradleBuildTargets();
+    assertEquals(2, list.size());
+    GradleBuildTarget targetFoo = list.stream()
+        .filter(bt -> bt.getBuildTarget().getId().getUri().contains("foo"))
+        .findFirst()
+        .get();
+    GradleBuildTarget targetBar = list.stream()
+        .filter(bt -> bt.getBuildTarget().getId().getUri().contains("bar"))
+        .findFirst()
+        .get();
+    assertSame(gradleSourceSetFoo, targetFoo.getSourceSet());
+    assertTrue(targetBar.getBuildTarget().getDependencies()
+        .contains(targetFoo.getBuildTarget().getId()));
+    assertTrue(targetBar.getSourceSet().getModuleDependencies().isEmpty());
+  }
+
+  @Test
+  void testHasUnknownArchives() {
+    File fooDir = new File("foo");
+    File fooJar = new File(fooDir, "build/libs/foo.jar").getAbsoluteFile();
+    File knownJar = new File(fooDir, "build/libs/foo-test.jar").getAbsoluteFile();
+    File checkedInJar = new File(fooDir, "libs/lib.jar").getAbsoluteFile();
+    GradleSourceSet gradleSourceSetFoo = getMockedTestGradleSourceSet();
+    when(gradleSourceSetFoo.getProjectPath()).thenReturn(":foo");
+    when(gradleSourceSetFoo.getProjectDir()).thenReturn(fooDir);
+    when(gradleSourceSetFoo.getSourceOutputDir())
+        .thenReturn(new File(fooDir, "build/classes/java/main").getAbsoluteFile());
+    when(gradleSourceSetFoo.getArchiveOutputFiles()).thenReturn(Collections.singleton(knownJar));
+    GradleSourceSet gradleSourceSetBar = getMockedTestGradleSourceSet();
+    when(gradleSourceSetBar.getProjectPath()).thenReturn(":bar");
+    when(gradleSourceSetBar.getProjectDir()).thenReturn(new File("bar"));
+    GradleSourceSets gradleSourceSets = mock(GradleSourceSets.class);
+    when(gradleSourceSets.getGradleSourceSets()).thenReturn(
+        Arrays.asList(gradleSourceSetFoo, gradleSourceSetBar));
+
+    BuildTargetManager manager = new BuildTargetManager();
+    manager.store(gradleSourceSets);
+
+    Set<File> projectDirs = Collections.singleton(new File("bar"));
+    GradleSourceSet newGradleSourceSetBar = getMockedTestGradleSourceSet();
+    when(newGradleSourceSetBar.getProjectPath()).thenReturn(":bar");
+    when(newGradleSourceSetBar.getProjectDir()).thenReturn(new File("bar"));
+    GradleSourceSets projectSourceSets = mock(GradleSourceSets.class);
+    when(projectSourceSets.getGradleSourceSets()).thenReturn(Arrays.asList(newGradleSourceSetBar));
+
+    when(newGradleSourceSetBar.getCompileClasspath())
+        .thenReturn(Arrays.asList(knownJar, checkedInJar));
+    assertFalse(manager.hasUnknownArchives(projectSourceSets, projectDirs));
+
+    // 'bar' now depends on a jar of 'foo' which the last full sync did not record.
+    when(newGradleSourceSetBar.getCompileClasspath()).thenReturn(Arrays.asList(fooJar));
+    assertTrue(manager.hasUnknownArchives(projectSourceSets, projectDirs));
+  }
+
+  private GradleSourceSetFingerprint getFingerprint(String classpath) {
+    DefaultGradleSourceSetFingerprint fingerprint = new DefaultGradleSourceSetFingerprint();
+    fingerprint.setStructure("structure");
+    fingerprint.setClasspath(classpath);
+    fingerprint.setDependencies("dependencies");
+    fingerprint.setExtensions("extensions");
+    return fingerprint;
+  }
+
   private GradleSourceSet getMockedTestGradleSourceSet() {
     GradleSourceSet mocked = mock(GradleSourceSet.class);
     when(mocked.getGradleVersion()).thenReturn("8.0");
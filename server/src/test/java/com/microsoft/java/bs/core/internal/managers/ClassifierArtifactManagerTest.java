@@ -0,0 +1,50 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.managers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.microsoft.java.bs.core.internal.gradle.GradleApiConnector;
+import com.microsoft.java.bs.gradle.model.Artifact;
+import com.microsoft.java.bs.gradle.model.GradleClassifierArtifacts;
+import com.microsoft.java.bs.gradle.model.impl.DefaultArtifact;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleClassifierArtifacts;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleModuleDependency;
+
+class ClassifierArtifactManagerTest {
+
+  @Test
+  void testResolveOnce() {
+    Artifact jar = new DefaultArtifact(URI.create("file:///guava.jar"), null);
+    Artifact sources = new DefaultArtifact(URI.create("file:///guava-sources.jar"), "sources");
+    GradleApiConnector connector = mock(GradleApiConnector.class);
+    when(connector.getClassifierArtifacts(any(), any(), any())).thenReturn(
+        new DefaultGradleClassifierArtifacts(Collections.singletonMap(
+            GradleClassifierArtifacts.getModuleKey("com.google.guava", "guava", "33.0"),
+            Arrays.asList(sources))));
+    ClassifierArtifactManager manager = new ClassifierArtifactManager(connector,
+        mock(PreferenceManager.class));
+
+    manager.resolve(Collections.singleton(new File("foo")), null);
+    manager.resolve(Collections.singleton(new File("foo")), null);
+
+    verify(connector, times(1)).getClassifierArtifacts(any(), any(), any());
+    List<Artifact> artifacts = manager.getArtifacts(new DefaultGradleModuleDependency(
+        "com.google.guava", "guava", "33.0", Arrays.asList(jar)));
+    assertEquals(Arrays.asList(jar, sources), artifacts);
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.managers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.microsoft.java.bs.core.internal.model.Preferences;
+import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+import com.microsoft.java.bs.gradle.model.GradleSourceSets;
+import com.microsoft.java.bs.gradle.model.LanguageExtension;
+import com.microsoft.java.bs.gradle.model.SupportedLanguages;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSet;
+import com.microsoft.java.bs.gradle.model.impl.DefaultGradleSourceSets;
+import com.microsoft.java.bs.gradle.model.impl.DefaultJavaExtension;
+
+class SnapshotManagerTest {
+
+  @TempDir
+  File workspace;
+
+  @Test
+  void testSaveAndLoad() throws IOException {
+    Files.writeString(new File(workspace, "build.gradle").toPath(), "apply plugin: 'java'");
+    SnapshotManager snapshotManager = new SnapshotManager(getPreferenceManager());
+    GradleSourceSets sourceSets = getSourceSets();
+
+    snapshotManager.save(sourceSets);
+
+    assertEquals(sourceSets, snapshotManager.load());
+  }
+
+  @Test
+  void testBuildScriptChangeDiscardsSnapshot() throws IOException {
+    File buildFile = new File(workspace, "build.gradle");
+    Files.writeString(buildFile.toPath(), "apply plugin: 'java'");
+    SnapshotManager snapshotManager = new SnapshotManager(getPreferenceManager());
+    snapshotManager.save(getSourceSets());
+
+    Files.writeString(buildFile.toPath(), "apply plugin: 'java-library'");
+
+    assertNull(snapshotManager.load());
+  }
+
+  @Test
+  void testNewSettingsFileDiscardsSnapshot() throws IOException {
+    SnapshotManager snapshotManager = new SnapshotManager(getPreferenceManager());
+    snapshotManager.save(getSourceSets());
+
+    Files.writeString(new File(workspace, "settings.gradle").toPath(), "include 'a'");
+
+    assertNull(snapshotManager.load());
+  }
+
+  @Test
+  void testPreferenceChangeDiscardsSnapshot() {
+    PreferenceManager preferenceManager = getPreferenceManager();
+    SnapshotManager snapshotManager = new SnapshotManager(preferenceManager);
+    snapshotManager.save(getSourceSets());
+
+    preferenceManager.getPreferences().setGradleArguments(Arrays.asList("--offline"));
+
+    assertNull(snapshotManager.load());
+  }
+
+  private PreferenceManager getPreferenceManager() {
+    PreferenceManager preferenceManager = new PreferenceManager();
+    preferenceManager.setRootUri(workspace.toURI());
+    preferenceManager.setPreferences(new Preferences());
+    return preferenceManager;
+  }
+
+  private GradleSourceSets getSourceSets() {
+    DefaultJavaExtension javaExtension = new DefaultJavaExtension();
+    javaExtension.setJavaVersion("17");
+    javaExtension.setCompilerArgs(Arrays.asList("-source", "17"));
+    DefaultGradleSourceSet sourceSet = new DefaultGradleSourceSet();
+    sourceSet.setProjectDir(workspace);
+    sourceSet.setRootDir(workspace);
+    sourceSet.setSourceSetName("main");
+    sourceSet.setSourceDirs(new HashSet<>(Arrays.asList(new File(workspace, "src/main/java"))));
+    sourceSet.setCompileClasspath(Arrays.asList(new File(workspace, "lib.jar")));
+    sourceSet.setModuleDependencies(Collections.emptySet());
+    sourceSet.setBuildTargetDependencies(Collections.emptySet());
+    Map<String, LanguageExtension> extensions = Collections.singletonMap(
+        SupportedLanguages.JAVA.getBspName(), javaExtension);
+    sourceSet.setExtensions(extensions);
+    return new DefaultGradleSourceSets(Arrays.<GradleSourceSet>asList(sourceSet));
+  }
+}
@@ -296,6 +296,7 @@ class BuildTargetServerIntegrationTest {
         "build", "libs", "plugins").toString();
     System.setProperty(Launcher.PROP_PLUGIN_DIR, pluginDir);
     System.setProperty("bsp.plugin.reloadworkspace.disabled", "true");
+    System.setProperty("bsp.plugin.snapshot.disabled", "true");
   }
 
   @AfterAll
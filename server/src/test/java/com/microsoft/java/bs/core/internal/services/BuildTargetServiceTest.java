@@ -5,20 +5,27 @@ package com.microsoft.java.bs.core.internal.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import ch.epfl.scala.bsp4j.DependencySourcesParams;
 import ch.epfl.scala.bsp4j.DependencySourcesResult;
@@ -29,6 +36,7 @@ import ch.epfl.scala.bsp4j.ScalacOptionsResult;
 import com.microsoft.java.bs.gradle.model.ScalaExtension;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import com.microsoft.java.bs.core.internal.gradle.GradleApiConnector;
 import com.microsoft.java.bs.core.internal.managers.BuildTargetManager;
@@ -47,6 +55,8 @@ import ch.epfl.scala.bsp4j.BuildTargetIdentifier;
 import ch.epfl.scala.bsp4j.DependencyModule;
 import ch.epfl.scala.bsp4j.DependencyModulesParams;
 import ch.epfl.scala.bsp4j.DependencyModulesResult;
+import ch.epfl.scala.bsp4j.InverseSourcesParams;
+import ch.epfl.scala.bsp4j.InverseSourcesResult;
 import ch.epfl.scala.bsp4j.JavacOptionsParams;
 import ch.epfl.scala.bsp4j.JavacOptionsResult;
 import ch.epfl.scala.bsp4j.MavenDependencyModule;
@@ -55,8 +65,10 @@ import ch.epfl.scala.bsp4j.OutputPathsParams;
 import ch.epfl.scala.bsp4j.OutputPathsResult;
 import ch.epfl.scala.bsp4j.ResourcesParams;
 import ch.epfl.scala.bsp4j.ResourcesResult;
+import ch.epfl.scala.bsp4j.SourcesItem;
 import ch.epfl.scala.bsp4j.SourcesParams;
 import ch.epfl.scala.bsp4j.SourcesResult;
+import ch.epfl.scala.bsp4j.TextDocumentIdentifier;
 import ch.epfl.scala.bsp4j.WorkspaceBuildTargetsResult;
 
 class BuildTargetServiceTest {
@@ -118,6 +130,23 @@ class BuildTargetServiceTest {
     assertInstanceOf(ScalaBuildTarget.class, response.getTargets().get(0).getData());
   }
 
+  @Test
+  void testInitialSyncIsShared() {
+    BuildTargetService buildTargetService = new BuildTargetService(buildTargetManager,
+        connector, preferenceManager);
+    CompletableFuture<Void> initialSync = buildTargetService.startInitialSync();
+    assertSame(initialSync, buildTargetService.startInitialSync());
+
+    List<CompletableFuture<Void>> requests = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      requests.add(CompletableFuture.runAsync(buildTargetService::getWorkspaceBuildTargets));
+    }
+    CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).join();
+
+    assertTrue(initialSync.isDone());
+    verify(connector, times(1)).getGradleSourceSets(any(), any(), any(), any());
+  }
+
   @Test
   void testGetBuildTargetSources() {
     GradleBuildTarget gradleBuildTarget = mock(GradleBuildTarget.class);
@@ -152,6 +181,76 @@ class BuildTargetServiceTest {
     });
   }
 
+  @Test
+  void testGetBuildTargetSourcesIsCachedPerTarget() {
+    GradleSourceSet gradleSourceSet = mock(GradleSourceSet.class);
+    when(gradleSourceSet.getSourceDirs()).thenReturn(Collections.singleton(new File("srcDir")));
+    when(gradleSourceSet.getGeneratedSourceDirs()).thenReturn(Collections.emptySet());
+    GradleBuildTarget gradleBuildTarget = new GradleBuildTarget(mock(BuildTarget.class),
+        gradleSourceSet);
+    when(buildTargetManager.getGradleBuildTarget(any())).thenReturn(gradleBuildTarget);
+
+    BuildTargetService buildTargetService = new BuildTargetService(buildTargetManager,
+        connector, preferenceManager);
+    SourcesParams params = new SourcesParams(Arrays.asList(new BuildTargetIdentifier("test")));
+    SourcesItem first = buildTargetService.getBuildTargetSources(params).getItems().get(0);
+    assertSame(first, buildTargetService.getBuildTargetSources(params).getItems().get(0));
+
+    // a changed target is stored as a new instance.
+    GradleBuildTarget changedTarget = new GradleBuildTarget(mock(BuildTarget.class),
+        gradleSourceSet);
+    when(buildTargetManager.getGradleBuildTarget(any())).thenReturn(changedTarget);
+    assertNotSame(first, buildTargetService.getBuildTargetSources(params).getItems().get(0));
+  }
+
+  @Test
+  void testGetBuildTargetSourcesKeepsOrderOfLargeRequests() {
+    List<BuildTargetIdentifier> targets = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      BuildTargetIdentifier btId = new BuildTargetIdentifier("target" + i);
+      targets.add(btId);
+      // every third target is unknown and skipped.
+      if (i % 3 != 0) {
+        when(buildTargetManager.getGradleBuildTarget(btId)).thenReturn(new GradleBuildTarget(
+            mock(BuildTarget.class), mock(GradleSourceSet.class)));
+      }
+    }
+
+    BuildTargetService buildTargetService = new BuildTargetService(buildTargetManager,
+        connector, preferenceManager);
+    SourcesResult result = buildTargetService.getBuildTargetSources(new SourcesParams(targets));
+
+    List<BuildTargetIdentifier> expected = new ArrayList<>();
+    for (int i = 0; i < targets.size(); i++) {
+      if (i % 3 != 0) {
+        expected.add(targets.get(i));
+      }
+    }
+    List<BuildTargetIdentifier> actual = new ArrayList<>();
+    for (SourcesItem item : result.getItems()) {
+      actual.add(item.getTarget());
+    }
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void testGetBuildTargetInverseSources() {
+    BuildTarget target = mock(BuildTarget.class);
+    BuildTargetIdentifier btId = new BuildTargetIdentifier("test");
+    when(target.getId()).thenReturn(btId);
+    GradleBuildTarget gradleBuildTarget = new GradleBuildTarget(target,
+        mock(GradleSourceSet.class));
+    File file = new File("srcDir/Foo.java");
+    when(buildTargetManager.getGradleBuildTargetsContaining(file.getAbsoluteFile()))
+        .thenReturn(Collections.singleton(gradleBuildTarget));
+
+    BuildTargetService buildTargetService = new BuildTargetService(buildTargetManager,
+        connector, preferenceManager);
+    InverseSourcesResult result = buildTargetService.getBuildTargetInverseSources(
+        new InverseSourcesParams(new TextDocumentIdentifier(file.toURI().toString())));
+    assertEquals(Arrays.asList(btId), result.getTargets());
+  }
+
   @Test
   void testGetBuildTargetResources() {
     GradleBuildTarget gradleBuildTarget = mock(GradleBuildTarget.class);
@@ -198,6 +297,28 @@ class BuildTargetServiceTest {
     assertEquals(2, outputPathsResult.getItems().get(0).getOutputPaths().size());
   }
 
+  @Test
+  void testOutputPathUrisOfMissingDirectories(@TempDir Path tempDir) {
+    GradleBuildTarget gradleBuildTarget = mock(GradleBuildTarget.class);
+    when(buildTargetManager.getGradleBuildTarget(any())).thenReturn(gradleBuildTarget);
+
+    GradleSourceSet gradleSourceSet = mock(GradleSourceSet.class);
+    when(gradleBuildTarget.getSourceSet()).thenReturn(gradleSourceSet);
+
+    // the output directory does not exist until the first build.
+    File sourceOutputDir = tempDir.resolve("classes").toFile();
+    when(gradleSourceSet.getSourceOutputDir()).thenReturn(sourceOutputDir);
+
+    BuildTargetService buildTargetService = new BuildTargetService(buildTargetManager,
+        connector, preferenceManager);
+    OutputPathsResult outputPathsResult = buildTargetService.getBuildTargetOutputPaths(
+        new OutputPathsParams(Arrays.asList(new BuildTargetIdentifier("test"))));
+
+    assertTrue(sourceOutputDir.mkdirs());
+    assertEquals(sourceOutputDir.toURI() + "?kind=source",
+        outputPathsResult.getItems().get(0).getOutputPaths().get(0).getUri());
+  }
+
   @Test
   void testGetBuildTargetDependencySources() {
     GradleBuildTarget gradleBuildTarget = mock(GradleBuildTarget.class);
@@ -286,6 +407,37 @@ class BuildTargetServiceTest {
     return moduleDependencies;
   }
 
+  @Test
+  void testGetJavacOptionsSharesEqualClasspaths() {
+    BuildTargetIdentifier fooId = new BuildTargetIdentifier("foo");
+    BuildTargetIdentifier barId = new BuildTargetIdentifier("bar");
+    GradleBuildTarget foo = getJavaBuildTarget(Arrays.asList(new File("a.jar")));
+    GradleBuildTarget bar = getJavaBuildTarget(Arrays.asList(new File("a.jar")));
+    when(buildTargetManager.getGradleBuildTarget(fooId)).thenReturn(foo);
+    when(buildTargetManager.getGradleBuildTarget(barId)).thenReturn(bar);
+
+    BuildTargetService buildTargetService = new BuildTargetService(buildTargetManager,
+        connector, preferenceManager);
+    JavacOptionsResult result = buildTargetService.getBuildTargetJavacOptions(
+        new JavacOptionsParams(Arrays.asList(fooId, barId)));
+
+    assertEquals(2, result.getItems().size());
+    assertSame(result.getItems().get(0).getClasspath(),
+        result.getItems().get(1).getClasspath());
+  }
+
+  private GradleBuildTarget getJavaBuildTarget(List<File> classpath) {
+    JavaExtension javaExtension = mock(JavaExtension.class);
+    when(javaExtension.isJavaExtension()).thenReturn(true);
+    when(javaExtension.getAsJavaExtension()).thenReturn(javaExtension);
+    Map<String, LanguageExtension> extensions = new HashMap<>();
+    extensions.put(SupportedLanguages.JAVA.getBspName(), javaExtension);
+    GradleSourceSet gradleSourceSet = mock(GradleSourceSet.class);
+    when(gradleSourceSet.getExtensions()).thenReturn(extensions);
+    when(gradleSourceSet.getCompileClasspath()).thenReturn(classpath);
+    return new GradleBuildTarget(mock(BuildTarget.class), gradleSourceSet);
+  }
+
   @Test
   void testGetJavacOptions() {
     GradleBuildTarget gradleBuildTarget = mock(GradleBuildTarget.class);
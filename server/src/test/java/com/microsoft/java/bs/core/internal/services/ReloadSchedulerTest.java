@@ -0,0 +1,58 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ReloadSchedulerTest {
+
+  @Test
+  void testReloadsDuringSyncAreMerged() throws Exception {
+    AtomicInteger syncCount = new AtomicInteger();
+    AtomicInteger cancelledCount = new AtomicInteger();
+    CountDownLatch firstSyncStarted = new CountDownLatch(1);
+    ReloadScheduler scheduler = new ReloadScheduler(token -> {
+      if (syncCount.incrementAndGet() == 1) {
+        firstSyncStarted.countDown();
+        while (!token.isCancellationRequested()) {
+          Thread.onSpinWait();
+        }
+        cancelledCount.incrementAndGet();
+        throw new CancellationException();
+      }
+    });
+
+    CompletableFuture<Void> first = scheduler.schedule();
+    assertTrue(firstSyncStarted.await(10, TimeUnit.SECONDS));
+    CompletableFuture<Void> second = scheduler.schedule();
+    CompletableFuture<Void> third = scheduler.schedule();
+
+    assertSame(second, third);
+    CompletableFuture.allOf(first, second, third).get(10, TimeUnit.SECONDS);
+    assertEquals(2, syncCount.get());
+    assertEquals(1, cancelledCount.get());
+  }
+
+  @Test
+  void testFailureIsReported() {
+    ReloadScheduler scheduler = new ReloadScheduler(token -> {
+      throw new IllegalStateException("failed");
+    });
+
+    CompletableFuture<Void> future = scheduler.schedule();
+
+    assertTrue(future.handle((result, error) -> error).join()
+        instanceof IllegalStateException);
+  }
+}
@@ -0,0 +1,54 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+package com.microsoft.java.bs.core.internal.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.microsoft.java.bs.gradle.model.GradleSourceSet;
+
+class WorkspaceInternTableTest {
+
+  @Test
+  void testRetainAllKeepsValuesOfLiveSourceSets() {
+    List<File> liveClasspath = Arrays.asList(new File("live.jar"));
+    List<File> deadClasspath = Arrays.asList(new File("dead.jar"));
+    GradleSourceSet sourceSet = mock(GradleSourceSet.class);
+    when(sourceSet.getCompileClasspath()).thenReturn(liveClasspath);
+    WorkspaceInternTable internTable = new WorkspaceInternTable();
+    List<String> liveUris = internTable.toUris(liveClasspath);
+    List<String> deadUris = internTable.toUris(deadClasspath);
+
+    internTable.retainAll(Collections.singletonList(sourceSet));
+
+    assertSame(liveUris, internTable.toUris(liveClasspath));
+    assertNotSame(deadUris, internTable.toUris(deadClasspath));
+  }
+
+  @Test
+  void testClasspathUrisOfMissingEntries(@TempDir Path tempDir) {
+    File classesDir = tempDir.resolve("classes").toFile();
+    File jar = tempDir.resolve("lib.jar").toFile();
+    WorkspaceInternTable internTable = new WorkspaceInternTable();
+
+    List<String> uris = internTable.toUris(Arrays.asList(classesDir, jar));
+
+    // the entries are created after the first request.
+    assertTrue(classesDir.mkdirs());
+    assertEquals(Arrays.asList(classesDir.toURI().toString(), jar.toURI().toString()), uris);
+  }
+}
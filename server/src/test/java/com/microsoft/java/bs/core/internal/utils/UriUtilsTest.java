@@ -7,10 +7,13 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class UriUtilsTest {
   @Test
@@ -28,6 +31,16 @@ class UriUtilsTest {
     assertTrue(UriUtils.getQueryValueByKey(uriString, "foo").isEmpty());
   }
 
+  @Test
+  void testGetFileUri(@TempDir Path tempDir) {
+    File dir = tempDir.resolve("classes").toFile();
+    String uri = UriUtils.getFileUri(dir, true);
+    assertTrue(dir.mkdirs());
+    assertEquals(dir.toURI().toString(), uri);
+    File file = tempDir.resolve("a b.jar").toFile();
+    assertEquals(file.toURI().toString(), UriUtils.getFileUri(file, false));
+  }
+
   @Test
   void testGetUriWithoutQuery() throws URISyntaxException {
     String uriString = "file:/C:/Users/foo/bar?a=b&c=d";